@@ -1,6 +1,7 @@
 plugins {
     java
     id("com.github.johnrengelman.shadow") version ("7.0.0")
+    id("me.champeau.jmh") version ("0.7.2")
 }
 
 group = "at.helpch.placeholderapi.expansion"
@@ -15,6 +16,51 @@ repositories {
 dependencies {
     compileOnly("io.papermc.paper:paper-api:1.20.6-R0.1-SNAPSHOT")
     compileOnly("me.clip:placeholderapi:2.11.3")
+
+    // The benchmarks run the expansion against a stub server, so the APIs are needed at runtime
+    jmh("io.papermc.paper:paper-api:1.20.6-R0.1-SNAPSHOT")
+    jmh("me.clip:placeholderapi:2.11.3")
+
+    // Provided by the server at runtime, the Java 8 classes use it
+    testImplementation("com.google.guava:guava:32.1.2-jre")
+    testImplementation("org.junit.jupiter:junit-jupiter:5.10.2")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+    testCompileOnly("org.jetbrains:annotations:24.0.1")
+}
+
+// Classes of src/java17 and src/java21 replace the classes of the same name from src/main on servers running Java 17
+// and 21, through a multi-release jar. They must keep the same API as the Java 8 classes they replace.
+val multiReleaseVersions = listOf(17, 21)
+
+multiReleaseVersions.forEach { release ->
+    val sourceSet = sourceSets.create("java$release") {
+        compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+    }
+
+    tasks.named<JavaCompile>(sourceSet.compileJavaTaskName) {
+        options.release.set(release)
+    }
+}
+
+fun Jar.multiRelease() {
+    manifest {
+        attributes["Multi-Release"] = true
+    }
+
+    multiReleaseVersions.forEach { release ->
+        into("META-INF/versions/$release") {
+            from(sourceSets["java$release"].output)
+        }
+    }
+}
+
+// ./gradlew jmh, or ./gradlew jmh -PjmhIncludes=TpsFormatter to run some of the benchmarks
+// ./gradlew jmh -PjmhMultiRelease=false to measure the Java 8 classes instead of the Java 17 and 21 ones
+jmh {
+    jmhVersion.set("1.37")
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    (findProperty("jmhIncludes") as String?)?.let { includes.add(it) }
 }
 
 tasks {
@@ -23,6 +69,8 @@ tasks {
             attributes["Implementation-Title"] = "server"
             attributes["Implementation-Version"] = project.version
         }
+
+        multiRelease()
     }
 
     java {
@@ -31,7 +79,37 @@ tasks {
         sourceCompatibility = JavaVersion.VERSION_1_8
     }
 
+    test {
+        useJUnitPlatform()
+    }
+
     shadowJar {
         archiveFileName.set("PAPI-Expansion-Server-${project.version}.jar")
+        multiRelease()
+    }
+
+    // ./gradlew testJava8 testJava17 testJava21 runs the tests on each Java version against the multi-release jar, so
+    // each version loads its own classes. The JDKs are found through the Gradle toolchains.
+    listOf(8, 17, 21).forEach { release ->
+        val testJava = register<Test>("testJava$release") {
+            description = "Runs the tests on Java $release against the multi-release jar."
+            group = LifecycleBasePlugin.VERIFICATION_GROUP
+            useJUnitPlatform()
+            testClassesDirs = sourceSets.test.get().output.classesDirs
+            classpath = files(jar) + sourceSets.test.get().output + (sourceSets.test.get().runtimeClasspath - sourceSets.main.get().output)
+            javaLauncher.set(project.javaToolchains.launcherFor {
+                languageVersion.set(JavaLanguageVersion.of(release))
+            })
+        }
+
+        check {
+            dependsOn(testJava)
+        }
+    }
+
+    named<Jar>("jmhJar") {
+        if (findProperty("jmhMultiRelease") != "false") {
+            multiRelease()
+        }
     }
 }
\ No newline at end of file
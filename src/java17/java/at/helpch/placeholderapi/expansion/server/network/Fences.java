@@ -0,0 +1,41 @@
+package at.helpch.placeholderapi.expansion.server.network;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * Memory fences for the memory-mapped file, Java 17 version of the class in {@code src/main}
+ * <br/>
+ * The {@link VarHandle} fences are the supported equivalent of the {@code Unsafe} ones and need no reflection.
+ */
+final class Fences {
+
+    /**
+     * @return whether the fences are available on this Java version
+     */
+    static boolean isAvailable() {
+        return true;
+    }
+
+    /**
+     * Loads before the fence are not reordered with loads and stores after it
+     */
+    static void loadFence() {
+        VarHandle.acquireFence();
+    }
+
+    /**
+     * Loads and stores before the fence are not reordered with stores after it
+     */
+    static void storeFence() {
+        VarHandle.releaseFence();
+    }
+
+    /**
+     * Wait a little before reading a slot that is being written again, the writer only needs a few stores to finish
+     * so spinning is cheaper than giving up the processor
+     */
+    static void spinWait() {
+        Thread.onSpinWait();
+    }
+
+}
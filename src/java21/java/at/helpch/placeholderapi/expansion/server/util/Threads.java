@@ -0,0 +1,24 @@
+package at.helpch.placeholderapi.expansion.server.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Threads of the background samplers and of the metrics exporter, Java 21 version of the class in {@code src/main}
+ * <br/>
+ * The tasks mostly wait, on a virtual thread they don't hold a platform thread and its stack while they do.
+ */
+public final class Threads {
+
+    /**
+     * Create a factory of virtual threads, which are always daemon threads
+     *
+     * @param name name of the threads
+     * @return thread factory
+     */
+    public static @NotNull ThreadFactory newFactory(@NotNull final String name) {
+        return Thread.ofVirtual().name(name).factory();
+    }
+
+}
@@ -0,0 +1,68 @@
+package at.helpch.placeholderapi.expansion.server.benchmark;
+
+import at.helpch.placeholderapi.expansion.server.util.Capabilities;
+import net.minecraft.server.MinecraftServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of reading the tps of the server with {@link Capabilities#getTps()}, and of reading the {@code recentTps} field
+ * of the server on Spigot through reflection compared to a bound {@link MethodHandle}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CapabilitiesBenchmark {
+
+    private Capabilities capabilities;
+    private Object server;
+    private Field tpsField;
+    private MethodHandle tpsGetter;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        StubServer.install(1, 0, 0, 0);
+        capabilities = Capabilities.probe();
+
+        server = MinecraftServer.getServer();
+        tpsField = server.getClass().getField("recentTps");
+        tpsGetter = MethodHandles.publicLookup().unreflectGetter(tpsField).bindTo(server);
+    }
+
+    @Benchmark
+    public double[] getTps() {
+        return capabilities.getTps();
+    }
+
+    @Benchmark
+    public double[] getTpsReflection() throws IllegalAccessException {
+        return (double[]) tpsField.get(server);
+    }
+
+    @Benchmark
+    public double[] getTpsMethodHandle() throws Throwable {
+        return (double[]) tpsGetter.invokeExact();
+    }
+
+    @Benchmark
+    public Capabilities probe() {
+        return Capabilities.probe();
+    }
+
+}
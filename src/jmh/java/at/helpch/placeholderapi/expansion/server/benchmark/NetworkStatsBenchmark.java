@@ -0,0 +1,72 @@
+package at.helpch.placeholderapi.expansion.server.benchmark;
+
+import at.helpch.placeholderapi.expansion.server.network.NetworkStats;
+import at.helpch.placeholderapi.expansion.server.sampler.TickSampler;
+import at.helpch.placeholderapi.expansion.server.snapshot.ServerSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of sharing the stats of the server with {@link NetworkStats#run()}, which writes its slot and reads every other
+ * one through the fences. Needs Java 17, the network stats are not available on Java 8.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NetworkStatsBenchmark {
+
+    @Param({"1", "8"})
+    public int servers;
+
+    private Path file;
+    private NetworkStats[] stats;
+
+    @Setup
+    public void setup() throws IOException {
+        StubServer.install(1, 0, 0, 0);
+        file = Files.createTempFile("server-expansion-jmh", ".dat");
+
+        final TickSampler tickSampler = new TickSampler(20);
+        stats = new NetworkStats[servers];
+
+        for (int slot = 0; slot < servers; slot++) {
+            stats[slot] = new NetworkStats(file, slot, Long.MAX_VALUE, () -> ServerSnapshot.EMPTY, tickSampler);
+            stats[slot].open();
+            stats[slot].run();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        for (final NetworkStats stats : this.stats) {
+            stats.close();
+        }
+
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int run() {
+        stats[0].run();
+        return stats[0].getServersAlive();
+    }
+
+}
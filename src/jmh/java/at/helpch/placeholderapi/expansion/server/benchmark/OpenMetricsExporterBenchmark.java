@@ -0,0 +1,100 @@
+package at.helpch.placeholderapi.expansion.server.benchmark;
+
+import at.helpch.placeholderapi.expansion.server.metrics.OpenMetricsExporter;
+import at.helpch.placeholderapi.expansion.server.sampler.TickSampler;
+import at.helpch.placeholderapi.expansion.server.snapshot.ServerSnapshot;
+import at.helpch.placeholderapi.expansion.server.snapshot.WorldSnapshot;
+import com.google.common.collect.ImmutableMap;
+import org.bukkit.entity.EntityType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a scrape of the {@link OpenMetricsExporter} over loopback, from the request to the last byte of the
+ * response. Requests are handled on the exporter's executor, whose thread comes from {@code Threads}: a virtual thread
+ * on Java 21. Run with {@code -PjmhMultiRelease=false} to measure the platform thread.
+ * <br/>
+ * The fork enables {@code TCP_NODELAY} on the exporter's sockets, without it every scrape waits for the 40 ms delayed
+ * acknowledgement of the loopback connection, which hides everything else.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class OpenMetricsExporterBenchmark {
+
+    @Param({"1", "10"})
+    public int worlds;
+
+    private final byte[] body = new byte[8192];
+
+    private OpenMetricsExporter exporter;
+    private URL url;
+
+    @Setup
+    public void setup() throws IOException {
+        final ImmutableMap.Builder<String, WorldSnapshot> worldSnapshots = ImmutableMap.builder();
+
+        for (int world = 0; world < worlds; world++) {
+            final String name = "world_" + world;
+            worldSnapshots.put(name.toLowerCase(Locale.ROOT), new WorldSnapshot(name, 10, 1000, 10, 5000, 4000, new int[EntityType.values().length]));
+        }
+
+        final ServerSnapshot snapshot = new ServerSnapshot(
+            System.currentTimeMillis(), 10 * worlds, 100, false, new double[]{19.97, 19.85, 19.6},
+            1000L * worlds, 10 * worlds, 5000 * worlds, 4000 * worlds, new int[EntityType.values().length],
+            worldSnapshots.build()
+        );
+
+        final int port;
+
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        exporter = new OpenMetricsExporter(() -> snapshot, new TickSampler(20));
+        exporter.start("127.0.0.1", port);
+        url = new URL("http://127.0.0.1:" + port + "/metrics");
+    }
+
+    @TearDown
+    public void tearDown() {
+        exporter.stop();
+    }
+
+    @Benchmark
+    public int scrape() throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        int size = 0;
+
+        // Reading the whole response lets the connection be kept alive for the next scrape
+        try (InputStream input = connection.getInputStream()) {
+            for (int read; (read = input.read(body)) != -1; ) {
+                size += read;
+            }
+        }
+
+        return size;
+    }
+
+}
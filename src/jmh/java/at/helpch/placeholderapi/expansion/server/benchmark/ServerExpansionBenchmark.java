@@ -0,0 +1,89 @@
+package at.helpch.placeholderapi.expansion.server.benchmark;
+
+import at.helpch.placeholderapi.expansion.server.ServerExpansion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link ServerExpansion#onRequest} for every family of params, against a {@link StubServer} with the given
+ * number of worlds, chunks, entities and players
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServerExpansionBenchmark {
+
+    /**
+     * One params of every family enabled by default, keep it in sync with {@code ServerExpansion#compile}. The families
+     * of the opt-in features ({@code lag_scanner}, {@code metrics}, {@code network} and {@code history}) only return
+     * {@code -1} while they are disabled, so they are left out.
+     */
+    @Param({
+        "online", "max_players", "unique_joins",
+        "name", "variant", "version", "build", "version_build", "version_full", "capabilities",
+        "ram_used", "ram_free", "ram_total", "ram_max",
+        "heap_old_used", "metaspace_used", "direct_memory_used", "alloc_rate_mb_s",
+        "gc_pause_last_ms", "gc_pause_max_1m",
+        "cpu_process", "cpu_system", "cpu_main_thread", "threads_live", "threads_peak", "threads_deadlocked",
+        "uptime", "total_chunks", "force_loaded_chunks", "total_living_entities", "total_entities",
+        "mspt", "mspt_p95", "mspt_p99", "mspt_avg_1m", "mspt_max_1m",
+        "snapshot_age_ms", "has_whitelist",
+        "tps", "tps_percent", "tps_1", "tps_5_colored", "tps_15_percent", "tps_one_percent_colored", "tps_10s",
+        "online_world", "chunks_world", "force_loaded_chunks_world", "entities_zombie", "entities_world_item_frame",
+        "time_HH:mm:ss", "time_yyyy-MM-dd",
+        "countdown_01/01/40 00:00:00", "countdown_raw_01/01/40 00:00:00",
+        "countup_01/01/20 00:00:00", "countup_raw_01/01/20 00:00:00"
+    })
+    public String params;
+
+    @Param({"3"})
+    public int worlds;
+
+    @Param({"1000"})
+    public int chunksPerWorld;
+
+    @Param({"5000"})
+    public int entitiesPerWorld;
+
+    @Param({"100"})
+    public int players;
+
+    private ServerExpansion expansion;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        StubServer.install(worlds, chunksPerWorld, entitiesPerWorld, players);
+        expansion = new ServerExpansion();
+
+        if (!expansion.canRegister()) {
+            throw new IllegalStateException("The expansion could not be registered");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        expansion.clear();
+    }
+
+    @Benchmark
+    public String onRequest() {
+        return expansion.onRequest(null, params);
+    }
+
+}
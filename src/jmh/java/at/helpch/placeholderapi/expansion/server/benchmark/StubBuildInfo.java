@@ -0,0 +1,66 @@
+package at.helpch.placeholderapi.expansion.server.benchmark;
+
+import io.papermc.paper.ServerBuildInfo;
+import net.kyori.adventure.key.Key;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+/**
+ * Build information of the {@link StubServer}, loaded by {@link ServerBuildInfo#buildInfo()} as a service
+ */
+public final class StubBuildInfo implements ServerBuildInfo {
+
+    @Override
+    public @NotNull Key brandId() {
+        return BRAND_PAPER_ID;
+    }
+
+    @Override
+    public boolean isBrandCompatible(@NotNull final Key brandId) {
+        return brandId.equals(BRAND_PAPER_ID);
+    }
+
+    @Override
+    public @NotNull String brandName() {
+        return "Paper";
+    }
+
+    @Override
+    public @NotNull String minecraftVersionId() {
+        return "1.20.6";
+    }
+
+    @Override
+    public @NotNull String minecraftVersionName() {
+        return "1.20.6";
+    }
+
+    @Override
+    public @NotNull OptionalInt buildNumber() {
+        return OptionalInt.of(0);
+    }
+
+    @Override
+    public @NotNull Instant buildTime() {
+        return Instant.EPOCH;
+    }
+
+    @Override
+    public @NotNull Optional<String> gitBranch() {
+        return Optional.empty();
+    }
+
+    @Override
+    public @NotNull Optional<String> gitCommit() {
+        return Optional.empty();
+    }
+
+    @Override
+    public @NotNull String asString(@NotNull final StringRepresentation representation) {
+        return "1.20.6-0";
+    }
+
+}
@@ -0,0 +1,330 @@
+package at.helpch.placeholderapi.expansion.server.benchmark;
+
+import me.clip.placeholderapi.PlaceholderAPIPlugin;
+import me.clip.placeholderapi.configuration.PlaceholderAPIConfig;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.PluginLogger;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import sun.misc.Unsafe;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Local Bukkit server for the benchmarks, built from {@link Proxy proxies} so that it does not depend on a server
+ * implementation. Every method that is not stubbed returns an empty value, or another stub for interfaces, so the
+ * expansion can register and sample as it would on a real server.
+ * <br/>
+ * {@link PlaceholderAPIPlugin} is allocated without running its constructor, only the fields used by the expansion
+ * are set.
+ */
+public final class StubServer {
+
+    private static final Logger LOGGER = Logger.getLogger("StubServer");
+    private static final double[] TPS = {19.97, 19.85, 19.6};
+
+    /**
+     * Entity types spawned in the worlds, living and non-living
+     */
+    private static final EntityType[] ENTITY_TYPES = {
+        EntityType.ZOMBIE, EntityType.SKELETON, EntityType.COW, EntityType.VILLAGER, EntityType.ITEM_FRAME,
+        EntityType.ARMOR_STAND, EntityType.ARROW, EntityType.EXPERIENCE_ORB
+    };
+
+    /**
+     * Returned by a {@link Stub} to fall back to the default value of the method
+     */
+    private static final Object NOT_STUBBED = new Object();
+
+    private static final Object lock = new Object();
+    private static volatile List<World> worlds = Collections.emptyList();
+    private static volatile List<Player> players = Collections.emptyList();
+    private static File dataFolder;
+
+    /**
+     * Install the server and PlaceholderAPI if needed, then replace the worlds
+     *
+     * @param worldCount        number of worlds, the first one is called {@code world}
+     * @param chunksPerWorld    loaded chunks in each world
+     * @param entitiesPerWorld  entities in each world
+     * @param playerCount       online players, spread over the worlds
+     */
+    public static void install(final int worldCount, final int chunksPerWorld, final int entitiesPerWorld, final int playerCount) {
+        synchronized (lock) {
+            if (Bukkit.getServer() == null) {
+                installServer();
+            }
+
+            final List<Player> players = new ArrayList<>(playerCount);
+            final List<World> worlds = new ArrayList<>(worldCount);
+
+            for (int index = 0; index < worldCount; index++) {
+                final String name = (index == 0) ? "world" : "world_" + index;
+                final List<Player> worldPlayers = new ArrayList<>();
+
+                for (int player = index; player < playerCount; player += worldCount) {
+                    worldPlayers.add(stub(Player.class, null));
+                }
+
+                players.addAll(worldPlayers);
+                worlds.add(createWorld(name, chunksPerWorld, entitiesPerWorld, worldPlayers));
+            }
+
+            StubServer.players = players;
+            StubServer.worlds = worlds;
+        }
+    }
+
+    private static void installServer() {
+        try {
+            dataFolder = Files.createTempDirectory("server-expansion-jmh").toFile();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not create the data folder", e);
+        }
+
+        final Server server = stub(Server.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                    return "StubServer";
+                case "getVersion":
+                    return "git-Paper-0 (MC: 1.20.6)";
+                case "getBukkitVersion":
+                    return "1.20.6-R0.1-SNAPSHOT";
+                case "getMinecraftVersion":
+                    return "1.20.6";
+                case "getLogger":
+                    return LOGGER;
+                case "getWorlds":
+                    return worlds;
+                case "getOnlinePlayers":
+                    return players;
+                case "getMaxPlayers":
+                    return 500;
+                case "hasWhitelist":
+                case "isPrimaryThread":
+                    return true;
+                case "getTPS":
+                    return TPS.clone();
+            }
+
+            return NOT_STUBBED;
+        });
+
+        Bukkit.setServer(server);
+        installPlaceholderAPI(server);
+    }
+
+    /**
+     * Install a {@link PlaceholderAPIPlugin} without enabling it, written against PlaceholderAPI 2.11.3, the version the
+     * jmh source set depends on. The fields set by reflection are not part of its API: the {@link JavaPlugin} fields
+     * are looked up by name, the config and the plugin instance by type. Check this method when updating the
+     * dependency, a missing field fails the setup of every benchmark.
+     *
+     * @param server server returned by the plugin
+     */
+    private static void installPlaceholderAPI(@NotNull final Server server) {
+        try {
+            final Field unsafeField = Unsafe.class.getDeclaredField("theUnsafe");
+            unsafeField.setAccessible(true);
+
+            final PlaceholderAPIPlugin plugin = (PlaceholderAPIPlugin) ((Unsafe) unsafeField.get(null)).allocateInstance(PlaceholderAPIPlugin.class);
+            final YamlConfiguration config = new YamlConfiguration();
+            config.set("boolean.true", "yes");
+            config.set("boolean.false", "no");
+            config.set("date_format", "MM/dd/yy HH:mm:ss");
+
+            setField(JavaPlugin.class, plugin, "server", server);
+            setField(JavaPlugin.class, plugin, "dataFolder", dataFolder);
+            setField(JavaPlugin.class, plugin, "description", new PluginDescriptionFile("PlaceholderAPI", "jmh", PlaceholderAPIPlugin.class.getName()));
+            setField(JavaPlugin.class, plugin, FileConfiguration.class, config);
+
+            final Field logger = JavaPlugin.class.getDeclaredField("logger");
+            logger.setAccessible(true);
+            logger.set(plugin, logger.getType().isAssignableFrom(Logger.class) ? LOGGER : new PluginLogger(plugin));
+
+            setField(PlaceholderAPIPlugin.class, plugin, PlaceholderAPIConfig.class, new PlaceholderAPIConfig(plugin));
+            setField(PlaceholderAPIPlugin.class, null, PlaceholderAPIPlugin.class, plugin);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not install PlaceholderAPI", e);
+        }
+    }
+
+    private static void setField(
+        @NotNull final Class<?> owner, @Nullable final Object target, @NotNull final String name, @NotNull final Object value
+    ) throws ReflectiveOperationException {
+        final Field field = owner.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    /**
+     * Set the only field of a type, for fields whose name is not part of the API
+     */
+    private static void setField(
+        @NotNull final Class<?> owner, @Nullable final Object target, @NotNull final Class<?> type, @NotNull final Object value
+    ) throws ReflectiveOperationException {
+        for (final Field field : owner.getDeclaredFields()) {
+            if (field.getType() == type) {
+                field.setAccessible(true);
+                field.set(target, value);
+                return;
+            }
+        }
+
+        throw new NoSuchFieldException(owner.getName() + " has no field of type " + type.getName());
+    }
+
+    private static @NotNull World createWorld(
+        @NotNull final String name, final int chunkCount, final int entityCount, @NotNull final List<Player> players
+    ) {
+        final int side = (int) Math.ceil(Math.sqrt(chunkCount));
+        final Chunk[] chunks = new Chunk[chunkCount];
+
+        for (int index = 0; index < chunkCount; index++) {
+            final int x = index % side - side / 2;
+            final int z = index / side - side / 2;
+
+            chunks[index] = stub(Chunk.class, (method, args) -> {
+                switch (method.getName()) {
+                    case "getX":
+                        return x;
+                    case "getZ":
+                        return z;
+                }
+
+                return NOT_STUBBED;
+            });
+        }
+
+        final List<Entity> entities = new ArrayList<>(entityCount);
+
+        for (int index = 0; index < entityCount; index++) {
+            final EntityType type = ENTITY_TYPES[index % ENTITY_TYPES.length];
+            entities.add(stub(Entity.class, (method, args) -> method.getName().equals("getType") ? type : NOT_STUBBED));
+        }
+
+        final File worldFolder = new File(dataFolder, name);
+
+        return stub(World.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                    return name;
+                case "getWorldFolder":
+                    return worldFolder;
+                case "getLoadedChunks":
+                    return chunks.clone();
+                case "getEntities":
+                    return new ArrayList<>(entities);
+                case "getEntityCount":
+                    return entities.size();
+                case "getPlayers":
+                    return new ArrayList<>(players);
+                case "getPlayerCount":
+                    return players.size();
+            }
+
+            return NOT_STUBBED;
+        });
+    }
+
+    @FunctionalInterface
+    private interface Stub {
+
+        Object invoke(@NotNull Method method, @Nullable Object[] args);
+
+    }
+
+    /**
+     * Create a stub of an interface
+     *
+     * @param type interface
+     * @param stub stubbed methods, or {@code null} if the stub only returns default values
+     * @return stub
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> @NotNull T stub(@NotNull final Class<T> type, @Nullable final Stub stub) {
+        final InvocationHandler handler = (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+            }
+
+            if (stub != null) {
+                final Object value = stub.invoke(method, args);
+
+                if (value != NOT_STUBBED) {
+                    return value;
+                }
+            }
+
+            return getDefaultValue(method.getReturnType());
+        };
+
+        return (T) Proxy.newProxyInstance(StubServer.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static @Nullable Object getDefaultValue(@NotNull final Class<?> type) {
+        if (type == void.class) {
+            return null;
+        } else if (type == boolean.class) {
+            return false;
+        } else if (type == char.class) {
+            return '\0';
+        } else if (type == byte.class) {
+            return (byte) 0;
+        } else if (type == short.class) {
+            return (short) 0;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == float.class) {
+            return 0.0f;
+        } else if (type == double.class) {
+            return 0.0;
+        } else if (type == String.class) {
+            return "";
+        } else if (type.isArray()) {
+            return Array.newInstance(type.getComponentType(), 0);
+        } else if (type == List.class || type == Collection.class) {
+            return Collections.emptyList();
+        } else if (type == Set.class) {
+            return Collections.emptySet();
+        } else if (type == Map.class) {
+            return Collections.emptyMap();
+        } else if (type.isInterface()) {
+            return stub(type, null);
+        }
+
+        return null;
+    }
+
+}
@@ -0,0 +1,83 @@
+package at.helpch.placeholderapi.expansion.server.benchmark;
+
+import at.helpch.placeholderapi.expansion.server.resolver.PlaceholderResolver;
+import at.helpch.placeholderapi.expansion.server.snapshot.ServerSnapshot;
+import at.helpch.placeholderapi.expansion.server.util.DurationFormatter;
+import at.helpch.placeholderapi.expansion.server.util.TimeFormatter;
+import com.google.common.collect.ImmutableMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.ZoneId;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the durations, dates and countdowns of {@link TimeFormatter}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeFormatterBenchmark {
+
+    private TimeFormatter timeFormatter;
+    private PlaceholderResolver time;
+    private PlaceholderResolver countdown;
+    private PlaceholderResolver countdownRaw;
+    private long duration;
+
+    @Setup
+    public void setup() {
+        // Countdowns without a format use the date format of PlaceholderAPI's config
+        StubServer.install(1, 0, 0, 0);
+
+        timeFormatter = new TimeFormatter(
+            Locale.ENGLISH,
+            ZoneId.of("UTC"),
+            new DurationFormatter(
+                ImmutableMap.<String, Object>builder()
+                    .put("year", "y").put("week", "w").put("day", "d").put("hour", "h")
+                    .put("minute", "m").put("second", "s").put("millisecond", "ms")
+                    .build(),
+                DurationFormatter.Unit.WEEK, DurationFormatter.Unit.SECOND, 0
+            )
+        );
+        time = timeFormatter.compileTime("HH:mm:ss");
+        countdown = timeFormatter.compileTimeBetween("01/01/40 00:00:00", true, true);
+        countdownRaw = timeFormatter.compileTimeBetween("01/01/40 00:00:00", true, false);
+    }
+
+    @Benchmark
+    public String formatTimeInSeconds() {
+        // Different durations every call so the formatter can't be folded into a constant
+        duration = (duration + 7_919) % 10_000_000;
+        return timeFormatter.formatTimeInSeconds(duration);
+    }
+
+    @Benchmark
+    public String time() {
+        return time.resolve(null, ServerSnapshot.EMPTY, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public String countdown() {
+        return countdown.resolve(null, ServerSnapshot.EMPTY, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public String countdownRaw() {
+        return countdownRaw.resolve(null, ServerSnapshot.EMPTY, System.currentTimeMillis());
+    }
+
+}
@@ -0,0 +1,74 @@
+package at.helpch.placeholderapi.expansion.server.benchmark;
+
+import at.helpch.placeholderapi.expansion.server.resolver.PlaceholderResolver;
+import at.helpch.placeholderapi.expansion.server.sampler.TickSampler;
+import at.helpch.placeholderapi.expansion.server.snapshot.ServerSnapshot;
+import at.helpch.placeholderapi.expansion.server.util.TpsFormatter;
+import com.google.common.collect.ImmutableMap;
+import org.bukkit.entity.EntityType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the tps styles of {@link TpsFormatter}, with a new snapshot every {@code snapshotEvery} calls like a server
+ * that publishes snapshots while placeholders are requested
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TpsFormatterBenchmark {
+
+    @Param({"", "percent", "1", "5_colored", "15_percent", "1_percent_colored", "10s"})
+    public String type;
+
+    @Param({"1000"})
+    public int snapshotEvery;
+
+    private PlaceholderResolver resolver;
+    private ServerSnapshot[] snapshots;
+    private int calls;
+
+    @Setup
+    public void setup() {
+        final TickSampler tickSampler = new TickSampler(15 * 60 * 20);
+
+        for (int tick = 0; tick < 20 * 20; tick++) {
+            tickSampler.run();
+        }
+
+        resolver = new TpsFormatter("&c", "&e", "&a", tickSampler).compile(type);
+        snapshots = new ServerSnapshot[]{snapshot(19.97, 19.5, 18.2), snapshot(20.02, 17.1, 12.4)};
+
+        if (resolver == null) {
+            throw new IllegalArgumentException("Invalid tps type " + type);
+        }
+    }
+
+    private static ServerSnapshot snapshot(final double one, final double five, final double fifteen) {
+        return new ServerSnapshot(
+            System.currentTimeMillis(), 0, 0, false, new double[]{one, five, fifteen},
+            0, 0, 0, 0, new int[EntityType.values().length],
+            ImmutableMap.of()
+        );
+    }
+
+    @Benchmark
+    public String resolve() {
+        return resolver.resolve(null, snapshots[(calls++ / snapshotEvery) & 1], System.currentTimeMillis());
+    }
+
+}
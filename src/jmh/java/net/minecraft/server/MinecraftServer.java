@@ -0,0 +1,17 @@
+package net.minecraft.server;
+
+/**
+ * Stands in for the server's main class, which {@code Capabilities} looks up by name to read the tps on servers without
+ * {@code Bukkit#getTPS()}
+ */
+public final class MinecraftServer {
+
+    private static final MinecraftServer SERVER = new MinecraftServer();
+
+    public final double[] recentTps = {20, 20, 20};
+
+    public static MinecraftServer getServer() {
+        return SERVER;
+    }
+
+}
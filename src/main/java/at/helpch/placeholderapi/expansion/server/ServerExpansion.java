@@ -1,38 +1,113 @@
 package at.helpch.placeholderapi.expansion.server;
 
+import at.helpch.placeholderapi.expansion.server.history.MetricsHistory;
+import at.helpch.placeholderapi.expansion.server.metrics.CallMetrics;
+import at.helpch.placeholderapi.expansion.server.metrics.OpenMetricsExporter;
+import at.helpch.placeholderapi.expansion.server.metrics.StatsCommandListener;
+import at.helpch.placeholderapi.expansion.server.network.NetworkStats;
+import at.helpch.placeholderapi.expansion.server.resolver.PlaceholderResolver;
+import at.helpch.placeholderapi.expansion.server.sampler.CpuSampler;
+import at.helpch.placeholderapi.expansion.server.sampler.LagScanner;
+import at.helpch.placeholderapi.expansion.server.sampler.MemorySampler;
+import at.helpch.placeholderapi.expansion.server.sampler.TickSampler;
+import at.helpch.placeholderapi.expansion.server.snapshot.RegionCollector;
+import at.helpch.placeholderapi.expansion.server.snapshot.ServerSnapshot;
+import at.helpch.placeholderapi.expansion.server.snapshot.SnapshotSampler;
+import at.helpch.placeholderapi.expansion.server.snapshot.WorldSnapshot;
+import at.helpch.placeholderapi.expansion.server.tracker.ChunkTracker;
+import at.helpch.placeholderapi.expansion.server.tracker.EntityTracker;
+import at.helpch.placeholderapi.expansion.server.tracker.PlayerTracker;
+import at.helpch.placeholderapi.expansion.server.tracker.UniqueJoinsTracker;
+import at.helpch.placeholderapi.expansion.server.util.Capabilities;
+import at.helpch.placeholderapi.expansion.server.util.DurationFormatter;
 import at.helpch.placeholderapi.expansion.server.util.Logging;
-import at.helpch.placeholderapi.expansion.server.util.ServerUtil;
+import at.helpch.placeholderapi.expansion.server.util.NumberStrings;
+import at.helpch.placeholderapi.expansion.server.util.Scheduling;
 import at.helpch.placeholderapi.expansion.server.util.TimeFormatter;
 import at.helpch.placeholderapi.expansion.server.util.TpsFormatter;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Ints;
 import me.clip.placeholderapi.PlaceholderAPIPlugin;
 import me.clip.placeholderapi.expansion.Cacheable;
 import me.clip.placeholderapi.expansion.Configurable;
 import me.clip.placeholderapi.expansion.PlaceholderExpansion;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
-import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.EntityType;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.function.ToIntFunction;
 
 public final class ServerExpansion extends PlaceholderExpansion implements Cacheable, Configurable {
 
-    private final Cache<String, Integer> cache = CacheBuilder.newBuilder()
-        .expireAfterWrite(1, TimeUnit.MINUTES)
+    /**
+     * How many distinct params strings are kept compiled in {@link #resolvers}
+     */
+    private static final int MAX_COMPILED_PLACEHOLDERS = 1_000;
+
+    /**
+     * How often (in ticks) the unique joins count is saved if it changed
+     */
+    private static final long UNIQUE_JOINS_SAVE_PERIOD = 5 * 60 * 20;
+
+    /**
+     * How often (in ticks) the entities are counted again when the server doesn't have Paper's entity add/remove events
+     */
+    private static final long ENTITIES_RECONCILE_PERIOD = 5 * 20;
+
+    /**
+     * How many ticks are kept by the {@link TickSampler}, also the window of the {@code mspt_p<n>} placeholders
+     */
+    private static final int TICK_SAMPLER_CAPACITY = 15 * 60 * 20;
+
+    /**
+     * Period of the {@link MemorySampler} in ticks
+     */
+    private static final long MEMORY_SAMPLE_PERIOD = 20;
+
+    /**
+     * How often (in ticks) the network stats are shared and read
+     */
+    private static final long NETWORK_STATS_PERIOD = 20;
+
+    /**
+     * Params starting with one of these are counted in {@link CallMetrics} under the prefix without the trailing
+     * {@code _}, other params are their own family
+     */
+    private static final String[] FAMILY_PREFIXES = {
+        "tps_", "top_chunk_", "mspt_avg_", "mspt_max_", "gc_pause_max_", "gc_count_", "stats_calls_", "stats_p99_ns_",
+        "online_group_", "online_", "chunks_", "force_loaded_chunks_", "entities_", "time_",
+        "countdown_raw_", "countdown_", "countup_raw_", "countup_"
+    };
+
+    /**
+     * Compiled placeholders, the key is the params string received on {@link #onRequest(OfflinePlayer, String)}
+     */
+    private final Cache<String, PlaceholderResolver> resolvers = CacheBuilder.newBuilder()
+        .maximumSize(MAX_COMPILED_PLACEHOLDERS)
+        .recordStats()
         .build();
 
     private final Runtime runtime = Runtime.getRuntime();
@@ -48,9 +123,33 @@ public final class ServerExpansion extends PlaceholderExpansion implements Cache
     private String serverName;
     // -----
 
+    /**
+     * When the JVM was started, in milliseconds since the epoch
+     */
+    private long startTime;
+
+    private Capabilities capabilities;
+    private TickSampler tickSampler;
+    private MemorySampler memorySampler;
+    private CpuSampler cpuSampler;
+    private LagScanner lagScanner;
+    private CallMetrics callMetrics;
+    private OpenMetricsExporter metricsExporter;
+    private NetworkStats networkStats;
+    private MetricsHistory metricsHistory;
     private TpsFormatter tpsFormatter;
     private TimeFormatter timeFormatter;
 
+    private UniqueJoinsTracker uniqueJoinsTracker;
+    private Map<String, List<String>> worldGroups;
+    private SnapshotSampler snapshotSampler;
+
+    /**
+     * Listeners and tasks registered in {@link #canRegister()}, removed in {@link #clear()}
+     */
+    private final List<Listener> listeners = new ArrayList<>();
+    private final List<Scheduling.Task> tasks = new ArrayList<>();
+
     @Override
     public @NotNull String getIdentifier() {
         return "server";
@@ -69,37 +168,286 @@ public final class ServerExpansion extends PlaceholderExpansion implements Cache
     @Override
     public boolean canRegister() {
         this.serverName = getString("server_name", "A Minecraft Server");
+
+        final Capabilities capabilities = Capabilities.probe();
+        this.capabilities = capabilities;
+
+        final TickSampler tickSampler = new TickSampler(TICK_SAMPLER_CAPACITY);
+        final Listener paperTickListener = tickSampler.createPaperListener(capabilities);
+
+        if (paperTickListener != null) {
+            registerListener(paperTickListener);
+        } else {
+            tasks.add(Scheduling.runTimer(getPlaceholderAPI(), tickSampler, 1, 1));
+        }
+
+        this.tickSampler = tickSampler;
+
+        final MemorySampler memorySampler = new MemorySampler(capabilities.hasManagementBeans());
+        memorySampler.start();
+        memorySampler.run();
+        tasks.add(Scheduling.runTimerAsync(getPlaceholderAPI(), memorySampler, MEMORY_SAMPLE_PERIOD, MEMORY_SAMPLE_PERIOD));
+        this.memorySampler = memorySampler;
+
+        final CpuSampler cpuSampler = new CpuSampler(getWindow("cpu.smoothing", "10s"), capabilities.hasManagementBeans());
+        cpuSampler.start(getWindow("cpu.interval", "1s"));
+        this.cpuSampler = cpuSampler;
+
+        // Resolved from a task rather than assuming canRegister is called from the main thread, Folia has none
+        if (!capabilities.isFolia()) {
+            Scheduling.runTask(getPlaceholderAPI(), () -> {
+                if (Bukkit.isPrimaryThread()) {
+                    cpuSampler.setMainThreadId(Thread.currentThread().getId());
+                }
+            });
+        }
+
         this.tpsFormatter = new TpsFormatter(
             getString("tps_color.low", "&c"),
             getString("tps_color.medium", "&e"),
-            getString("tps_color.high", "&a")
+            getString("tps_color.high", "&a"),
+            tickSampler
         );
+        final ZoneId timeZone = ZoneId.of(this.getString("time.zone", ZoneId.systemDefault().getId()));
         this.timeFormatter = new TimeFormatter(
             Locale.forLanguageTag(this.getString("time.locale", Locale.getDefault().toLanguageTag())),
-            ZoneId.of(this.getString("time.zone", ZoneId.systemDefault().getId())),
-            Optional.ofNullable(getConfigSection("time.suffix")).map(section -> section.getValues(false)).orElseGet(HashMap::new)
+            timeZone,
+            new DurationFormatter(
+                Optional.ofNullable(getConfigSection("time.suffix")).map(section -> section.getValues(false)).orElseGet(HashMap::new),
+                getUnit("time.largest_unit", DurationFormatter.Unit.WEEK),
+                getUnit("time.smallest_unit", DurationFormatter.Unit.SECOND),
+                getInt("time.max_units", 0)
+            )
         );
+        this.startTime = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+        // Loaded before the listener is registered, the joins while the folder is counted are reconciled by the tracker
+        final UniqueJoinsTracker uniqueJoinsTracker = new UniqueJoinsTracker(getDataFolder().resolve("unique_joins"));
+        final boolean uniqueJoinsLoaded = uniqueJoinsTracker.load();
+        registerListener(uniqueJoinsTracker);
+
+        if (!uniqueJoinsLoaded && !Bukkit.getWorlds().isEmpty()) {
+            final Path playerDataFolder = Bukkit.getWorlds().get(0).getWorldFolder().toPath().resolve("playerdata");
+            Scheduling.runAsync(getPlaceholderAPI(), () -> uniqueJoinsTracker.seed(playerDataFolder));
+        }
+
+        tasks.add(Scheduling.runTimerAsync(getPlaceholderAPI(), uniqueJoinsTracker::save, UNIQUE_JOINS_SAVE_PERIOD, UNIQUE_JOINS_SAVE_PERIOD));
+        this.uniqueJoinsTracker = uniqueJoinsTracker;
+
+        final PlayerTracker playerTracker = new PlayerTracker();
+        registerListener(playerTracker);
+        playerTracker.seed();
+        this.worldGroups = getWorldGroups();
+
+        // Chunks can only be read from the thread of the region that owns them on Folia
+        final boolean lagScannerEnabled = getBoolean("lag_scanner.enabled", false) && !capabilities.isFolia();
+
+        // The lag scanner walks the loaded chunks section by section
+        final ChunkTracker chunkTracker = new ChunkTracker(getPlaceholderAPI(), capabilities.isFolia(), lagScannerEnabled);
+        registerListener(chunkTracker);
+        chunkTracker.seed();
+
+        final Map<SnapshotSampler.Section, Long> ttls = new EnumMap<>(SnapshotSampler.Section.class);
+
+        for (final SnapshotSampler.Section section : SnapshotSampler.Section.values()) {
+            ttls.put(section, getTtl("cache." + section.getKey() + ".ttl", section.getDefaultTtl()));
+        }
+
+        final SnapshotSampler snapshotSampler;
+
+        if (capabilities.isFolia()) {
+            // Chunks and entities can only be read from the thread of the region that owns them
+            snapshotSampler = new SnapshotSampler(new RegionCollector(getPlaceholderAPI(), chunkTracker), capabilities, ttls);
+        } else {
+            final EntityTracker entityTracker = new EntityTracker();
+            final Listener paperEntityListener = entityTracker.createPaperListener(capabilities);
+            registerListener(entityTracker);
+            entityTracker.reconcile();
+
+            if (paperEntityListener != null) {
+                registerListener(paperEntityListener);
+            } else {
+                tasks.add(Scheduling.runTimer(getPlaceholderAPI(), entityTracker::reconcile, ENTITIES_RECONCILE_PERIOD, ENTITIES_RECONCILE_PERIOD));
+            }
+
+            snapshotSampler = new SnapshotSampler(chunkTracker, entityTracker, playerTracker, capabilities, ttls);
+        }
+
+        if (lagScannerEnabled) {
+            final LagScanner lagScanner = new LagScanner(
+                chunkTracker,
+                getInt("lag_scanner.top", 5),
+                TimeUnit.MICROSECONDS.toNanos(getLong("lag_scanner.budget_us", 500)),
+                TimeUnit.MILLISECONDS.toNanos(getWindow("lag_scanner.interval", "30s"))
+            );
+            tasks.add(Scheduling.runTimer(getPlaceholderAPI(), lagScanner, 1, 1));
+            this.lagScanner = lagScanner;
+        }
+
+        if (getBoolean("metrics.enabled", false)) {
+            final CallMetrics callMetrics = new CallMetrics(
+                TimeUnit.MICROSECONDS.toNanos(getLong("metrics.slow_call_threshold_us", 1_000)),
+                capabilities.hasFlightRecorder()
+            );
+            final TimeFormatter timeFormatter = this.timeFormatter;
+            registerListener(new StatsCommandListener(callMetrics, ImmutableMap.of(
+                "resolvers", resolvers::stats,
+                "date_formats", timeFormatter::getFormatCacheStats
+            )));
+            this.callMetrics = callMetrics;
+        }
+
+        snapshotSampler.run();
+        tasks.add(Scheduling.runTimer(getPlaceholderAPI(), snapshotSampler, snapshotSampler.getPeriod(), snapshotSampler.getPeriod()));
+        this.snapshotSampler = snapshotSampler;
+
+        if (getBoolean("exporter.enabled", false)) {
+            final OpenMetricsExporter metricsExporter = new OpenMetricsExporter(snapshotSampler::getSnapshot, tickSampler);
+            final String host = getString("exporter.host", "127.0.0.1");
+            final int port = getInt("exporter.port", 9940);
+
+            try {
+                metricsExporter.start(host, port);
+                this.metricsExporter = metricsExporter;
+            } catch (IOException e) {
+                Logging.error(e, "Could not start the metrics exporter on {0}:{1}", host, String.valueOf(port));
+            }
+        }
+
+        if (getBoolean("network.enabled", false) && !NetworkStats.isSupported()) {
+            Logging.warn("The network stats require Java 17 or above, network.enabled is ignored");
+        } else if (getBoolean("network.enabled", false)) {
+            final String file = getString("network.file", getDefaultNetworkFile());
+            // -1 claims the first free slot
+            final int slot = getInt("network.slot", -1);
+
+            try {
+                final NetworkStats networkStats = new NetworkStats(
+                    Paths.get(file), slot, getWindow("network.timeout", "10s"), snapshotSampler::getSnapshot, tickSampler
+                );
+                networkStats.open();
+                networkStats.run();
+                tasks.add(Scheduling.runTimerAsync(getPlaceholderAPI(), networkStats, NETWORK_STATS_PERIOD, NETWORK_STATS_PERIOD));
+                this.networkStats = networkStats;
+            } catch (IOException | IllegalArgumentException e) {
+                Logging.error(e, "Could not share the network stats in slot {0} of \"{1}\"", String.valueOf(slot), file);
+            }
+        }
+
+        if (getBoolean("history.enabled", false)) {
+            long resolution = getWindow("history.resolution", "1m");
+
+            if (resolution < MetricsHistory.MIN_RESOLUTION) {
+                Logging.warn("history.resolution must be at least 1m, 1m is used");
+                resolution = MetricsHistory.MIN_RESOLUTION;
+            }
+
+            final MetricsHistory metricsHistory = new MetricsHistory(
+                getDataFolder().resolve("history.dat"), resolution, timeZone, snapshotSampler::getSnapshot, tickSampler
+            );
+
+            try {
+                metricsHistory.open();
+                final long period = Math.max(resolution / 50, 1);
+                tasks.add(Scheduling.runTimerAsync(getPlaceholderAPI(), metricsHistory, period, period));
+                this.metricsHistory = metricsHistory;
+            } catch (IOException e) {
+                Logging.error(e, "Could not open the history file");
+            }
+        }
+
         return true;
     }
 
     @Override
     public void clear() {
-        cache.invalidateAll();
+        resolvers.invalidateAll();
+
+        tasks.forEach(Scheduling.Task::cancel);
+        tasks.clear();
+        listeners.forEach(HandlerList::unregisterAll);
+        listeners.clear();
+
+        if (uniqueJoinsTracker != null) {
+            uniqueJoinsTracker.close();
+            uniqueJoinsTracker = null;
+        }
+
+        if (memorySampler != null) {
+            memorySampler.stop();
+            memorySampler = null;
+        }
+
+        if (cpuSampler != null) {
+            cpuSampler.stop();
+            cpuSampler = null;
+        }
+
+        if (metricsExporter != null) {
+            metricsExporter.stop();
+            metricsExporter = null;
+        }
+
+        if (networkStats != null) {
+            networkStats.close();
+            networkStats = null;
+        }
+
+        if (metricsHistory != null) {
+            metricsHistory.close();
+            metricsHistory = null;
+        }
+
+        snapshotSampler = null;
+        worldGroups = null;
+        lagScanner = null;
+        callMetrics = null;
+        capabilities = null;
+
         timeFormatter = null;
         tpsFormatter = null;
+        tickSampler = null;
     }
 
     @Override
     public Map<String, Object> getDefaults() {
         return ImmutableMap.<String, Object>builder()
             .put("server_name", "A Minecraft Server")
+            .put("cache.online.ttl", "1s")
+            .put("cache.tps.ttl", "1s")
+            .put("cache.chunks.ttl", "1s")
+            .put("cache.force_loaded_chunks.ttl", "5s")
+            .put("cache.entities.ttl", "1s")
+            .put("cpu.interval", "1s")
+            .put("cpu.smoothing", "10s")
+            .put("lag_scanner.enabled", false)
+            .put("lag_scanner.top", 5)
+            .put("lag_scanner.budget_us", 500)
+            .put("lag_scanner.interval", "30s")
+            .put("metrics.enabled", false)
+            .put("metrics.slow_call_threshold_us", 1_000)
+            .put("exporter.enabled", false)
+            .put("exporter.host", "127.0.0.1")
+            .put("exporter.port", 9940)
+            .put("network.enabled", false)
+            .put("network.file", getDefaultNetworkFile())
+            .put("network.slot", -1)
+            .put("network.timeout", "10s")
+            .put("history.enabled", false)
+            .put("history.resolution", "1m")
             .put("time.locale", Locale.getDefault().toLanguageTag())
             .put("time.zone", ZoneId.systemDefault().getId())
+            .put("time.largest_unit", "week")
+            .put("time.smallest_unit", "second")
+            .put("time.max_units", 0)
+            .put("time.suffix.year", "y")
             .put("time.suffix.week", "w")
             .put("time.suffix.day", "d")
             .put("time.suffix.hour", "h")
             .put("time.suffix.minute", "m")
             .put("time.suffix.second", "s")
+            .put("time.suffix.millisecond", "ms")
+            .put("world_groups.survival", ImmutableList.of("world", "world_nether", "world_the_end"))
             .put("tps_color.high", "&a")
             .put("tps_color.medium", "&e")
             .put("tps_color.low", "&c")
@@ -107,32 +455,118 @@ public final class ServerExpansion extends PlaceholderExpansion implements Cache
     }
 
     /**
-     * Get some data from all worlds
+     * Get the folder where the expansion stores its data
+     *
+     * @return {@code plugins/PlaceholderAPI/expansions/server}
+     */
+    private @NotNull Path getDataFolder() {
+        return getPlaceholderAPI().getDataFolder().toPath().resolve("expansions").resolve(getIdentifier());
+    }
+
+    /**
+     * Get a {@link DurationFormatter.Unit} from the config
+     *
+     * @param path         path
+     * @param defaultValue unit used if the path is not set or the unit is invalid
+     * @return unit
+     */
+    private @NotNull DurationFormatter.Unit getUnit(@NotNull final String path, @NotNull final DurationFormatter.Unit defaultValue) {
+        final String name = getString(path, defaultValue.getName());
+        final DurationFormatter.Unit unit = DurationFormatter.Unit.parse(name);
+
+        if (unit == null) {
+            Logging.warn("Invalid time unit \"{0}\" at {1}, using {2}", name, path, defaultValue.getName());
+            return defaultValue;
+        }
+
+        return unit;
+    }
+
+    /**
+     * Get a window like {@code 30s} or {@code 5m} from the config
+     *
+     * @param path         config path
+     * @param defaultValue default window
+     * @return window in milliseconds
+     */
+    private long getWindow(@NotNull final String path, @NotNull final String defaultValue) {
+        final String window = getString(path, defaultValue);
+        final long nanos = TickSampler.parseWindow(window);
+
+        if (nanos == -1) {
+            Logging.warn("Invalid window \"{0}\" at {1}, using {2}", window, path, defaultValue);
+            return TimeUnit.NANOSECONDS.toMillis(TickSampler.parseWindow(defaultValue));
+        }
+
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * Get the default file shared by the servers of the machine
      *
-     * @param function data to get (e.g. total entities)
-     * @return sum
+     * @return file in the temporary directory
      */
-    private int getFromAllWorlds(@NotNull final ToIntFunction<? super World> function) {
-        return Bukkit.getWorlds()
-            .stream()
-            .mapToInt(function)
-            .sum();
+    private static @NotNull String getDefaultNetworkFile() {
+        return Paths.get(System.getProperty("java.io.tmpdir"), "placeholderapi-server-network.dat").toString();
     }
 
     /**
-     * Get a value from the {@link #cache}
+     * Get the world groups from the config
      *
-     * @param key      key
-     * @param callable cache method
-     * @return value if found otherwise empty
+     * @return worlds of each group, the key is the lower case group name and the worlds are lower case names
      */
-    private @NotNull String getFromCache(@NotNull final String key, @NotNull final Callable<Integer> callable) {
-        try {
-            return String.valueOf(cache.get(key, callable));
-        } catch (ExecutionException e) {
-            Logging.error(e, "Could not get key \"{0}\" from cache", key);
-            return "";
+    private @NotNull Map<String, List<String>> getWorldGroups() {
+        final ConfigurationSection section = getConfigSection("world_groups");
+        final Map<String, Set<String>> groups = new HashMap<>();
+
+        if (section != null) {
+            for (final String group : section.getKeys(false)) {
+                final Set<String> worlds = groups.computeIfAbsent(group.toLowerCase(Locale.ROOT), __ -> new LinkedHashSet<>());
+
+                for (final String world : section.getStringList(group)) {
+                    worlds.add(world.toLowerCase(Locale.ROOT));
+                }
+            }
         }
+
+        final ImmutableMap.Builder<String, List<String>> worldGroups = ImmutableMap.builder();
+        groups.forEach((group, worlds) -> worldGroups.put(group, ImmutableList.copyOf(worlds)));
+        return worldGroups.build();
+    }
+
+    /**
+     * Get a ttl from the config, either {@code tick} to refresh once per tick or a window like {@code 30s}, an invalid
+     * ttl is logged and replaced by the default one
+     *
+     * @param path         path of the ttl
+     * @param defaultValue default window
+     * @return ttl in ticks
+     */
+    private long getTtl(@NotNull final String path, @NotNull final String defaultValue) {
+        final String ttl = getString(path, defaultValue);
+
+        if (ttl.equalsIgnoreCase("tick")) {
+            return 1;
+        }
+
+        long nanos = TickSampler.parseWindow(ttl);
+
+        if (nanos == -1) {
+            Logging.warn("Invalid ttl \"{0}\" at {1}, using {2}", ttl, path, defaultValue);
+            nanos = TickSampler.parseWindow(defaultValue);
+        }
+
+        return Math.max(TimeUnit.NANOSECONDS.toMillis(nanos) / 50, 1);
+    }
+
+    /**
+     * Register a listener that will be unregistered in {@link #clear()}
+     *
+     * @param listener listener
+     */
+    private void registerListener(@NotNull final Listener listener) {
+        Bukkit.getPluginManager().registerEvents(listener, getPlaceholderAPI());
+        listeners.add(listener);
     }
 
     /**
@@ -145,111 +579,480 @@ public final class ServerExpansion extends PlaceholderExpansion implements Cache
         return bool ? PlaceholderAPIPlugin.booleanTrue() : PlaceholderAPIPlugin.booleanFalse();
     }
 
+    /**
+     * Format a number with two decimals
+     *
+     * @param number number
+     * @return number formatted
+     */
+    private @NotNull String formatDecimal(final double number) {
+        return String.valueOf(Math.round(number * 100) / 100.0);
+    }
+
+    /**
+     * Format a ratio as a percent with two decimals, keeping {@code -1} for values that are not available
+     *
+     * @param ratio ratio between 0 and 1, negative if not available
+     * @return percent formatted
+     */
+    private @NotNull String formatPercent(final double ratio) {
+        return (ratio < 0) ? "-1" : formatDecimal(ratio * 100);
+    }
+
+    /**
+     * Format bytes in MiB, keeping {@code -1} for values that are not available
+     *
+     * @param bytes bytes, negative if not available
+     * @return MiB formatted
+     */
+    private @NotNull String formatMiB(final long bytes) {
+        return NumberStrings.of(bytes < 0 ? -1 : bytes / MiB);
+    }
+
     /**
      * Get the number of online players from a world
      *
+     * @param snapshot  snapshot to read the world from
      * @param worldName the name of the world
-     * @return {@code -1} if {@code worldName} is empty or the world doesn't exist, otherwise {@link World#getPlayers()}.size()
+     * @return {@code -1} if {@code worldName} is empty or the world doesn't exist, otherwise {@link WorldSnapshot#players()}
      */
-    private int getOnlinePlayers(@NotNull final String worldName) {
+    private static int getOnlinePlayers(@NotNull final ServerSnapshot snapshot, @NotNull final String worldName) {
         if (worldName.trim().isEmpty()) {
             return -1;
         }
 
-        return Optional.ofNullable(Bukkit.getWorld(worldName))
-            .map(World::getPlayers)
-            .map(List::size)
-            .orElse(-1);
+        final WorldSnapshot world = snapshot.world(worldName);
+        return (world == null) ? -1 : world.players();
+    }
+
+    /**
+     * Get the number of online players in the worlds of a group, read from the same snapshot as
+     * {@link #getOnlinePlayers(ServerSnapshot, String)} so both agree
+     *
+     * @param snapshot snapshot to read the worlds from
+     * @param worlds   lower case names of the worlds of the group
+     * @return online players in the worlds of the group that exist
+     */
+    private static int getOnlinePlayers(@NotNull final ServerSnapshot snapshot, @NotNull final List<String> worlds) {
+        int online = 0;
+
+        for (final String worldName : worlds) {
+            final WorldSnapshot world = snapshot.world(worldName);
+            online += (world == null) ? 0 : world.players();
+        }
+
+        return online;
+    }
+
+    /**
+     * Get the compiled resolver for some params, compiling and caching it if this is the first time they are requested
+     *
+     * @param params params
+     * @return resolver
+     */
+    private @NotNull PlaceholderResolver getResolver(@NotNull final String params) {
+        PlaceholderResolver resolver = resolvers.getIfPresent(params);
+
+        if (resolver == null) {
+            resolver = compile(params);
+
+            final CallMetrics callMetrics = this.callMetrics;
+
+            if (callMetrics != null) {
+                final String family = getFamily(params, resolver);
+                callMetrics.recordCompilation(family);
+                resolver = callMetrics.instrument(family, params, resolver);
+            }
+
+            resolvers.put(params, resolver);
+        }
+
+        return resolver;
+    }
+
+    /**
+     * Get the family some params are counted under in {@link CallMetrics}
+     *
+     * @param params   params
+     * @param resolver resolver compiled from the params
+     * @return family (e.g. {@code online} for {@code online_world}), {@code unknown} for invalid params
+     */
+    private @NotNull String getFamily(@NotNull final String params, @NotNull final PlaceholderResolver resolver) {
+        if (resolver == PlaceholderResolver.UNKNOWN) {
+            return "unknown";
+        }
+
+        for (final String prefix : FAMILY_PREFIXES) {
+            if (params.startsWith(prefix)) {
+                return prefix.substring(0, prefix.length() - 1);
+            }
+        }
+
+        return params;
     }
 
+    /**
+     * Parse some params into a resolver, binding their arguments so they don't have to be parsed again
+     *
+     * @param params params
+     * @return resolver, {@link PlaceholderResolver#UNKNOWN} if the params are invalid
+     */
     @SuppressWarnings("SpellCheckingInspection")
-    @Override
-    public @Nullable String onRequest(OfflinePlayer player, @NotNull String params) {
+    private @NotNull PlaceholderResolver compile(@NotNull final String params) {
+        // Without the tick events the mspt would be the interval between two ticks, about 50 ms even when idle
+        if (params.startsWith("mspt") && !tickSampler.measuresDurations()) {
+            return PlaceholderResolver.UNKNOWN;
+        }
+
         switch (params) {
             // ----- Players placeholders
             case "online":
-                return String.valueOf(Bukkit.getOnlinePlayers().size());
+                return (player, snapshot, now) -> NumberStrings.of(snapshot.online());
             case "max_players":
-                return String.valueOf(Bukkit.getMaxPlayers());
+                return (player, snapshot, now) -> NumberStrings.of(snapshot.maxPlayers());
             case "unique_joins":
-                return String.valueOf(Bukkit.getOfflinePlayers().length);
+                return (player, snapshot, now) -> NumberStrings.of(uniqueJoinsTracker.getUniqueJoins());
             // -----
 
             // ----- Server software placeholders
             case "name":
-                return this.serverName;
+                return (player, snapshot, now) -> this.serverName;
             case "variant":
-                return ServerUtil.getVariant();
+                return PlaceholderResolver.constant(capabilities.getVariant());
             case "version":
-                return ServerUtil.getServerVersion();
+                return PlaceholderResolver.constant(capabilities.getMinecraftVersion());
             case "build":
-                return ServerUtil.getBuild();
+                return PlaceholderResolver.constant(capabilities.getBuild());
             case "version_build":
             case "version_full":
-                return ServerUtil.getServerVersion() + '-' + ServerUtil.getBuild();
+                return PlaceholderResolver.constant(capabilities.getMinecraftVersion() + '-' + capabilities.getBuild());
+            case "capabilities":
+                return PlaceholderResolver.constant(capabilities.getSummary());
             // -----
 
             // ----- RAM placeholders
             case "ram_used":
-                return String.valueOf((runtime.totalMemory() - runtime.freeMemory()) / MiB);
+                return (player, snapshot, now) -> NumberStrings.of((runtime.totalMemory() - runtime.freeMemory()) / MiB);
             case "ram_free":
-                return String.valueOf(runtime.freeMemory() / MiB);
+                return (player, snapshot, now) -> NumberStrings.of(runtime.freeMemory() / MiB);
             case "ram_total":
-                return String.valueOf(runtime.totalMemory() / MiB);
+                return (player, snapshot, now) -> NumberStrings.of(runtime.totalMemory() / MiB);
             case "ram_max":
-                return String.valueOf(runtime.maxMemory() / MiB);
+                return (player, snapshot, now) -> NumberStrings.of(runtime.maxMemory() / MiB);
+            case "heap_old_used":
+                return (player, snapshot, now) -> formatMiB(memorySampler.getOldGenUsed());
+            case "metaspace_used":
+                return (player, snapshot, now) -> formatMiB(memorySampler.getMetaspaceUsed());
+            case "direct_memory_used":
+                return (player, snapshot, now) -> formatMiB(memorySampler.getDirectMemoryUsed());
+            case "alloc_rate_mb_s":
+                return (player, snapshot, now) -> {
+                    final double rate = memorySampler.getAllocationRate();
+                    return (rate < 0) ? "-1" : formatDecimal(rate / MiB);
+                };
+            // -----
+
+            // ----- CPU and threads placeholders
+            case "cpu_process":
+                return (player, snapshot, now) -> formatPercent(cpuSampler.getProcessCpu());
+            case "cpu_system":
+                return (player, snapshot, now) -> formatPercent(cpuSampler.getSystemCpu());
+            case "cpu_main_thread":
+                return (player, snapshot, now) -> formatPercent(cpuSampler.getMainThreadCpu());
+            case "threads_live":
+                return (player, snapshot, now) -> NumberStrings.of(cpuSampler.getLiveThreads());
+            case "threads_peak":
+                return (player, snapshot, now) -> NumberStrings.of(cpuSampler.getPeakThreads());
+            case "threads_deadlocked":
+                return (player, snapshot, now) -> NumberStrings.of(cpuSampler.getDeadlockedThreads());
+            // -----
+
+            // ----- GC placeholders
+            case "gc_pause_last_ms":
+                return (player, snapshot, now) -> NumberStrings.of(memorySampler.getLastPause());
             // -----
 
-            case "tps":
-                return tpsFormatter.getTps(null);
             case "uptime":
-                return timeFormatter.formatTimeInSeconds(TimeUnit.MILLISECONDS.toSeconds(ManagementFactory.getRuntimeMXBean().getUptime()));
+                return (player, snapshot, now) -> timeFormatter.formatTimeInMillis(now - startTime);
             case "total_chunks":
-                return getFromCache("chunks", () -> getFromAllWorlds(world -> world.getLoadedChunks().length));
+                return (player, snapshot, now) -> NumberStrings.of(snapshot.loadedChunks());
+            case "force_loaded_chunks":
+                return (player, snapshot, now) -> NumberStrings.of(snapshot.forceLoadedChunks());
             case "total_living_entities":
-                return getFromCache("livingEntities", () -> getFromAllWorlds(world -> world.getLivingEntities().size()));
+                return (player, snapshot, now) -> NumberStrings.of(snapshot.livingEntities());
             case "total_entities":
-                return getFromCache("totalEntities", () -> getFromAllWorlds(world -> world.getEntities().size()));
+                return (player, snapshot, now) -> NumberStrings.of(snapshot.entities());
+            case "total_tile_entities":
+                return (player, snapshot, now) -> NumberStrings.of(lagScanner == null ? -1 : lagScanner.getTileEntities());
+            case "total_hoppers":
+                return (player, snapshot, now) -> NumberStrings.of(lagScanner == null ? -1 : lagScanner.getHoppers());
+
+            // ----- Tick placeholders
+            case "mspt":
+                return (player, snapshot, now) -> formatDecimal(tickSampler.getMspt());
+            case "mspt_p95":
+                return (player, snapshot, now) -> formatDecimal(tickSampler.getPercentileMspt(0.95));
+            case "mspt_p99":
+                return (player, snapshot, now) -> formatDecimal(tickSampler.getPercentileMspt(0.99));
+            // -----
+
+            case "snapshot_age_ms":
+                return (player, snapshot, now) -> String.valueOf(now - snapshot.takenAt());
             case "has_whitelist":
-                return bool(Bukkit.hasWhitelist());
+                return (player, snapshot, now) -> bool(snapshot.whitelist());
+
+            // ----- History placeholders
+            case "peak_online_today":
+                return (player, snapshot, now) -> NumberStrings.of(metricsHistory == null ? -1 : metricsHistory.getPeakOnlineToday(now));
+            case "peak_online_alltime":
+                return (player, snapshot, now) -> NumberStrings.of(metricsHistory == null ? -1 : metricsHistory.getPeakOnlineAllTime());
+            case "avg_tps_24h":
+                return (player, snapshot, now) -> {
+                    final double averageTps = (metricsHistory == null) ? -1 : metricsHistory.getAverageTps(MetricsHistory.Window.DAY);
+                    return (averageTps < 0) ? "-1" : formatDecimal(averageTps);
+                };
+            case "min_tps_1h":
+                return (player, snapshot, now) -> {
+                    final double minTps = (metricsHistory == null) ? -1 : metricsHistory.getMinTps(MetricsHistory.Window.HOUR);
+                    return (minTps < 0) ? "-1" : formatDecimal(minTps);
+                };
+            // -----
+
+            // ----- Network placeholders
+            case "network_online":
+                return (player, snapshot, now) -> NumberStrings.of(networkStats == null ? -1 : networkStats.getOnline());
+            case "network_max_players":
+                return (player, snapshot, now) -> NumberStrings.of(networkStats == null ? -1 : networkStats.getMaxPlayers());
+            case "network_servers_alive":
+                return (player, snapshot, now) -> NumberStrings.of(networkStats == null ? -1 : networkStats.getServersAlive());
+            case "network_tps_min":
+                return (player, snapshot, now) -> {
+                    final double minTps = (networkStats == null) ? -1 : networkStats.getMinTps();
+                    return (minTps < 0) ? "-1" : formatDecimal(minTps);
+                };
+            // -----
+        }
+
+        // tps or tps_<type>
+        if (params.equals("tps") || params.startsWith("tps_")) {
+            return Optional.ofNullable(tpsFormatter.compile(params.equals("tps") ? null : params.substring("tps_".length())))
+                .orElse(PlaceholderResolver.UNKNOWN);
+        }
+
+        // mspt_avg_<window>
+        if (params.startsWith("mspt_avg_")) {
+            final long window = TickSampler.parseWindow(params.substring("mspt_avg_".length()));
+            return (window == -1) ? PlaceholderResolver.UNKNOWN : (player, snapshot, now) -> formatDecimal(tickSampler.getAverageMspt(window));
+        }
+
+        // mspt_max_<window>
+        if (params.startsWith("mspt_max_")) {
+            final long window = TickSampler.parseWindow(params.substring("mspt_max_".length()));
+            return (window == -1) ? PlaceholderResolver.UNKNOWN : (player, snapshot, now) -> formatDecimal(tickSampler.getMaxMspt(window));
+        }
+
+        // gc_pause_max_<window>
+        if (params.startsWith("gc_pause_max_")) {
+            final long window = TickSampler.parseWindow(params.substring("gc_pause_max_".length()));
+
+            if (window == -1) {
+                return PlaceholderResolver.UNKNOWN;
+            }
+
+            final MemorySampler.PauseWindow pauseWindow = memorySampler.getPauseWindow(window);
+            return (player, snapshot, now) -> NumberStrings.of(pauseWindow.getMax());
+        }
+
+        // gc_count_<collector> (e.g. gc_count_g1_young_generation)
+        if (params.startsWith("gc_count_")) {
+            final int collector = memorySampler.getCollectorIndex(params.substring("gc_count_".length()));
+            return (collector == -1) ? PlaceholderResolver.UNKNOWN : (player, snapshot, now) -> NumberStrings.of(memorySampler.getCollectionCount(collector));
+        }
+
+        // top_chunk_<rank>_<location|entities|tile_entities>
+        if (params.startsWith("top_chunk_")) {
+            return compileTopChunk(params.substring("top_chunk_".length()));
         }
 
-        // tps_<type>
-        if (params.startsWith("tps_")) {
-            return tpsFormatter.getTps(params.substring("tps_".length()));
+        // stats_calls_<family>
+        if (params.startsWith("stats_calls_")) {
+            final String family = params.substring("stats_calls_".length());
+            return (player, snapshot, now) -> {
+                final CallMetrics callMetrics = this.callMetrics;
+                return (callMetrics == null) ? "-1" : NumberStrings.of(callMetrics.getCalls(family));
+            };
+        }
+
+        // stats_p99_ns_<family>
+        if (params.startsWith("stats_p99_ns_")) {
+            final String family = params.substring("stats_p99_ns_".length());
+            return (player, snapshot, now) -> {
+                final CallMetrics callMetrics = this.callMetrics;
+                return (callMetrics == null) ? "-1" : NumberStrings.of(callMetrics.getPercentile(family, 0.99));
+            };
+        }
+
+        // online_group_<group>, a world named group_<group> is only read by online_<world name> if there is no such group
+        if (params.startsWith("online_group_")) {
+            final List<String> group = worldGroups.get(params.substring("online_group_".length()).toLowerCase(Locale.ROOT));
+
+            if (group != null) {
+                return (player, snapshot, now) -> NumberStrings.of(getOnlinePlayers(snapshot, group));
+            }
         }
 
         // online_<world name>
         if (params.startsWith("online_")) {
-            return String.valueOf(getOnlinePlayers(params.substring("online_".length())));
+            final String worldName = params.substring("online_".length());
+            return (player, snapshot, now) -> NumberStrings.of(getOnlinePlayers(snapshot, worldName));
+        }
+
+        // chunks_<world name>
+        if (params.startsWith("chunks_")) {
+            final String worldName = params.substring("chunks_".length());
+            return (player, snapshot, now) -> {
+                final WorldSnapshot world = snapshot.world(worldName);
+                return NumberStrings.of(world == null ? -1 : world.loadedChunks());
+            };
+        }
+
+        // force_loaded_chunks_<world name>
+        if (params.startsWith("force_loaded_chunks_")) {
+            final String worldName = params.substring("force_loaded_chunks_".length());
+            return (player, snapshot, now) -> {
+                final WorldSnapshot world = snapshot.world(worldName);
+                return NumberStrings.of(world == null ? -1 : world.forceLoadedChunks());
+            };
+        }
+
+        // entities_<type> or entities_<world name>_<type>
+        if (params.startsWith("entities_")) {
+            return compileEntities(params.substring("entities_".length()));
         }
 
         // time_<simple date format>
         if (params.startsWith("time_")) {
-            return timeFormatter.formatTime(params.substring("time_".length()));
+            return timeFormatter.compileTime(params.substring("time_".length()));
         }
 
         // countdown_raw_<date> or countdown_raw_<custom format>_<date>
         if (params.startsWith("countdown_raw_")) {
-            return timeFormatter.calculateTimeBetweenWithoutFormat(player, params.substring("countdown_raw_".length()), true);
+            final String args = params.substring("countdown_raw_".length());
+            return timeFormatter.compileTimeBetween(args, true, false);
         }
 
         // countdown_<date> or countdown_<custom format>_<date>
         if (params.startsWith("countdown_")) {
-            return timeFormatter.calculateTimeBetween(player, params.substring("countdown_".length()), true, true);
+            final String args = params.substring("countdown_".length());
+            return timeFormatter.compileTimeBetween(args, true, true);
         }
 
         // countup_raw_<date> or countup_raw_<custom format>_<date>
         if (params.startsWith("countup_raw_")) {
-            return timeFormatter.calculateTimeBetweenWithoutFormat(player, params.substring("countup_raw_".length()), false);
+            final String args = params.substring("countup_raw_".length());
+            return timeFormatter.compileTimeBetween(args, false, false);
         }
 
         // countup_<date> or countup_<custom format>_<date>
         if (params.startsWith("countup_")) {
-            return timeFormatter.calculateTimeBetween(player, params.substring("countup_".length()), false, true);
+            final String args = params.substring("countup_".length());
+            return timeFormatter.compileTimeBetween(args, false, true);
+        }
+
+        return PlaceholderResolver.UNKNOWN;
+    }
+
+    /**
+     * Parse the arguments of {@code entities_<type>} and {@code entities_<world name>_<type>}
+     *
+     * @param args arguments
+     * @return resolver, {@link PlaceholderResolver#UNKNOWN} if no entity type was found
+     */
+    private @NotNull PlaceholderResolver compileEntities(@NotNull final String args) {
+        final EntityType type = EntityTracker.parseType(args);
+
+        if (type != null) {
+            return (player, snapshot, now) -> NumberStrings.of(snapshot.entities(type));
+        }
+
+        // World names and entity types can both contain '_', prefer the longest type (e.g. world + ITEM_FRAME)
+        for (int index = args.indexOf('_'); index != -1; index = args.indexOf('_', index + 1)) {
+            final EntityType worldType = EntityTracker.parseType(args.substring(index + 1));
+
+            if (worldType != null) {
+                final String worldName = args.substring(0, index);
+                return (player, snapshot, now) -> {
+                    final WorldSnapshot world = snapshot.world(worldName);
+                    return NumberStrings.of(world == null ? -1 : world.entities(worldType));
+                };
+            }
+        }
+
+        return PlaceholderResolver.UNKNOWN;
+    }
+
+    /**
+     * Parse the arguments of {@code top_chunk_<rank>_<location|entities|tile_entities>}
+     *
+     * @param args arguments
+     * @return resolver, {@link PlaceholderResolver#UNKNOWN} if the rank or the value is invalid
+     */
+    private @NotNull PlaceholderResolver compileTopChunk(@NotNull final String args) {
+        final int separator = args.indexOf('_');
+        final Integer rank = (separator == -1) ? null : Ints.tryParse(args.substring(0, separator));
+
+        if (rank == null || rank < 1) {
+            return PlaceholderResolver.UNKNOWN;
+        }
+
+        final ToIntFunction<LagScanner.ChunkStats> count;
+
+        switch (args.substring(separator + 1)) {
+            case "location":
+                return (player, snapshot, now) -> {
+                    final LagScanner.ChunkStats chunk = (lagScanner == null) ? null : lagScanner.getTopChunk(rank);
+                    return (chunk == null) ? "" : chunk.location();
+                };
+            case "entities":
+                count = LagScanner.ChunkStats::entities;
+                break;
+            case "tile_entities":
+                count = LagScanner.ChunkStats::tileEntities;
+                break;
+            default:
+                return PlaceholderResolver.UNKNOWN;
+        }
+
+        return (player, snapshot, now) -> {
+            final LagScanner.ChunkStats chunk = (lagScanner == null) ? null : lagScanner.getTopChunk(rank);
+            return NumberStrings.of(chunk == null ? -1 : count.applyAsInt(chunk));
+        };
+    }
+
+    @Override
+    public @Nullable String onRequest(OfflinePlayer player, @NotNull String params) {
+        return getResolver(params).resolve(player, snapshotSampler.getSnapshot(), System.currentTimeMillis());
+    }
+
+    /**
+     * Resolve many placeholders at once, e.g. for a scoreboard or a tab list. Every placeholder is resolved against
+     * the same snapshot and the same time, so the values are consistent with each other and the snapshot and clock
+     * are read once per batch instead of once per placeholder.
+     *
+     * @param player player, can be {@code null}
+     * @param params params of each placeholder, without the {@code server_} prefix
+     * @return values in the same order as the params, {@code null} for the invalid ones
+     */
+    public @NotNull List<@Nullable String> resolveAll(@Nullable final OfflinePlayer player, @NotNull final List<String> params) {
+        final ServerSnapshot snapshot = snapshotSampler.getSnapshot();
+        final long now = System.currentTimeMillis();
+        final List<String> values = new ArrayList<>(params.size());
+
+        for (final String param : params) {
+            values.add(getResolver(param).resolve(player, snapshot, now));
         }
 
-        return null;
+        return values;
     }
 
 }
@@ -0,0 +1,505 @@
+package at.helpch.placeholderapi.expansion.server.history;
+
+import at.helpch.placeholderapi.expansion.server.sampler.TickSampler;
+import at.helpch.placeholderapi.expansion.server.snapshot.ServerSnapshot;
+import at.helpch.placeholderapi.expansion.server.util.Logging;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a time series of the online players, tps, mspt, used heap and entities, sampled every {@code resolution} and
+ * persisted to a ring file so the history survives restarts.
+ * <br/>
+ * The aggregates of every {@link Window} are maintained incrementally as samples are added and evicted: a running sum
+ * for the average tps, and monotonic queues for the min tps and the peak online players. They are published at once
+ * after each sample. Samples are copied to the memory-mapped file at most every {@value #FLUSH_PERIOD} milliseconds.
+ * <br/>
+ * {@link #run()} must be called every {@code resolution}, from a single thread.
+ */
+public final class MetricsHistory implements Runnable {
+
+    /**
+     * Windows of the aggregates, the ring holds enough samples for the longest one
+     */
+    public enum Window {
+
+        HOUR(TimeUnit.HOURS.toMillis(1)),
+        DAY(TimeUnit.DAYS.toMillis(1)),
+        WEEK(TimeUnit.DAYS.toMillis(7));
+
+        private static final Window[] WINDOWS = values();
+
+        private final long duration;
+
+        Window(final long duration) {
+            this.duration = duration;
+        }
+
+    }
+
+    /**
+     * Shortest time between two samples, in milliseconds, so the ring of the longest window stays around 10k samples
+     */
+    public static final long MIN_RESOLUTION = TimeUnit.MINUTES.toMillis(1);
+
+    private static final long MAGIC = 0x5041_5049_4849_5301L;
+    private static final long FLUSH_PERIOD = 5_000;
+
+    /**
+     * The tps are summed as fixed point longs with this scale, so adding and evicting a sample leaves no rounding error
+     */
+    private static final long TPS_SCALE = 1_000;
+
+    /**
+     * Layout of the file: a header, then the records of the ring, the record of sample {@code n} is at
+     * {@code n % capacity}
+     */
+    private static final int HEADER_SIZE = 64;
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_RESOLUTION = 8;
+    private static final int HEADER_CAPACITY = 16;
+    private static final int HEADER_WRITTEN = 24;
+    private static final int HEADER_PEAK_ONLINE = 32;
+
+    private static final int RECORD_SIZE = 32;
+    private static final int RECORD_TIME = 0;
+    private static final int RECORD_ONLINE = 8;
+    private static final int RECORD_ENTITIES = 12;
+    private static final int RECORD_TPS = 16;
+    private static final int RECORD_MSPT = 20;
+    private static final int RECORD_RAM_USED = 24;
+
+    private final Path file;
+    private final long resolution;
+    private final int capacity;
+    private final ZoneId timeZone;
+    private final Supplier<ServerSnapshot> snapshots;
+    private final TickSampler tickSampler;
+    private final Runtime runtime = Runtime.getRuntime();
+
+    // Ring of samples, only accessed from run(), open() and close()
+    private final long[] times;
+    private final int[] online;
+    private final int[] entities;
+    private final float[] tps;
+    private final float[] mspt;
+    private final long[] ramUsed;
+    private final WindowState[] windows = new WindowState[Window.WINDOWS.length];
+    private long written;
+    private long flushed;
+    private long lastFlush;
+    private int peakOnline;
+    private int peakOnlineToday;
+    private long todayEnd;
+
+    private MappedByteBuffer buffer;
+    private volatile Aggregates aggregates;
+
+    /**
+     * @param file        ring file
+     * @param resolution  time between two samples, in milliseconds, at least {@link #MIN_RESOLUTION}
+     * @param timeZone    time zone used to know when a day starts
+     * @param snapshots   supplier of the latest snapshot
+     * @param tickSampler tick sampler for the mspt
+     */
+    public MetricsHistory(
+        @NotNull final Path file, final long resolution, @NotNull final ZoneId timeZone,
+        @NotNull final Supplier<ServerSnapshot> snapshots, @NotNull final TickSampler tickSampler
+    ) {
+        this.file = file;
+        this.resolution = Math.max(resolution, MIN_RESOLUTION);
+        this.capacity = (int) Math.min(Window.WEEK.duration / this.resolution + 1, Integer.MAX_VALUE / RECORD_SIZE);
+        this.timeZone = timeZone;
+        this.snapshots = snapshots;
+        this.tickSampler = tickSampler;
+
+        this.times = new long[capacity];
+        this.online = new int[capacity];
+        this.entities = new int[capacity];
+        this.tps = new float[capacity];
+        this.mspt = new float[capacity];
+        this.ramUsed = new long[capacity];
+
+        for (final Window window : Window.WINDOWS) {
+            windows[window.ordinal()] = new WindowState(window.duration);
+        }
+
+        this.aggregates = publish();
+    }
+
+    private int index(final long sample) {
+        return (int) (sample % capacity);
+    }
+
+    private long scaledTps(final int index) {
+        return Math.round(tps[index] * (double) TPS_SCALE);
+    }
+
+    /**
+     * Map the ring file and load the samples it holds, the file is started over if it was written with another
+     * resolution. Samples that are older than a window are not part of it, even if the server was off since.
+     *
+     * @throws IOException if the file can't be mapped
+     */
+    public synchronized void open() throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            this.buffer = buffer;
+        }
+
+        if (buffer.getLong(HEADER_MAGIC) != MAGIC || buffer.getLong(HEADER_RESOLUTION) != resolution || buffer.getInt(HEADER_CAPACITY) != capacity) {
+            buffer.putLong(HEADER_MAGIC, MAGIC);
+            buffer.putLong(HEADER_RESOLUTION, resolution);
+            buffer.putInt(HEADER_CAPACITY, capacity);
+            buffer.putLong(HEADER_WRITTEN, 0);
+            buffer.putInt(HEADER_PEAK_ONLINE, 0);
+            return;
+        }
+
+        final long written = buffer.getLong(HEADER_WRITTEN);
+        final long first = Math.max(written - capacity, 0);
+        peakOnline = buffer.getInt(HEADER_PEAK_ONLINE);
+
+        for (final WindowState window : windows) {
+            window.start = first;
+        }
+
+        for (long sample = first; sample < written; sample++) {
+            final int index = index(sample);
+            final int offset = HEADER_SIZE + index * RECORD_SIZE;
+            times[index] = buffer.getLong(offset + RECORD_TIME);
+            online[index] = buffer.getInt(offset + RECORD_ONLINE);
+            entities[index] = buffer.getInt(offset + RECORD_ENTITIES);
+            tps[index] = buffer.getFloat(offset + RECORD_TPS);
+            mspt[index] = buffer.getFloat(offset + RECORD_MSPT);
+            ramUsed[index] = buffer.getLong(offset + RECORD_RAM_USED);
+            add(sample);
+        }
+
+        // The windows were rebuilt up to the last sample before the restart, samples that left them since are dropped
+        final long now = System.currentTimeMillis();
+
+        for (final WindowState window : windows) {
+            window.evict(0, written, now - window.duration);
+        }
+
+        this.written = written;
+        this.flushed = written;
+        this.aggregates = publish();
+    }
+
+    /**
+     * Copy the samples that were not flushed yet and drop the buffer, the file stays mapped until the buffer is garbage
+     * collected (see {@link at.helpch.placeholderapi.expansion.server.network.NetworkStats#close()})
+     */
+    public synchronized void close() {
+        if (buffer != null) {
+            flush();
+            buffer.force();
+            buffer = null;
+        }
+    }
+
+    /**
+     * Take a sample, synchronized with {@link #close()} so that no sample is taken while the file is unmapped
+     */
+    @Override
+    public synchronized void run() {
+        if (buffer == null) {
+            return;
+        }
+
+        try {
+            sample();
+        } catch (RuntimeException exception) {
+            Logging.error(exception, "Could not record the history of the server in \"{0}\"", file);
+        }
+    }
+
+    private void sample() {
+        final ServerSnapshot snapshot = snapshots.get();
+        final long now = System.currentTimeMillis();
+        final long sample = written;
+        final int index = index(sample);
+
+        // The sample replaces the oldest one in the ring, which has to leave the windows first
+        for (final WindowState window : windows) {
+            window.evict(sample + 1 - capacity, sample, Long.MIN_VALUE);
+        }
+
+        times[index] = now;
+        online[index] = snapshot.online();
+        entities[index] = snapshot.entities();
+        tps[index] = (float) snapshot.tps(0);
+        mspt[index] = tickSampler.measuresDurations() ? (float) tickSampler.getMspt() : -1;
+        ramUsed[index] = runtime.totalMemory() - runtime.freeMemory();
+
+        add(sample);
+        written = sample + 1;
+        aggregates = publish();
+
+        if (now - lastFlush >= FLUSH_PERIOD) {
+            flush();
+            lastFlush = now;
+        }
+    }
+
+    /**
+     * Add a sample to the aggregates, then evict the samples that left the windows
+     *
+     * @param sample sample number
+     */
+    private void add(final long sample) {
+        final int index = index(sample);
+        final long time = times[index];
+
+        if (time >= todayEnd) {
+            final LocalDate today = Instant.ofEpochMilli(time).atZone(timeZone).toLocalDate();
+            todayEnd = today.plusDays(1).atStartOfDay(timeZone).toInstant().toEpochMilli();
+            peakOnlineToday = 0;
+        }
+
+        peakOnline = Math.max(peakOnline, online[index]);
+        peakOnlineToday = Math.max(peakOnlineToday, online[index]);
+
+        for (final WindowState window : windows) {
+            window.add(sample);
+            window.evict(0, sample + 1, time - window.duration);
+        }
+    }
+
+    private void flush() {
+        final MappedByteBuffer buffer = this.buffer;
+
+        if (buffer == null || flushed == written) {
+            return;
+        }
+
+        // Samples that were overwritten in the ring before being flushed are lost
+        for (long sample = Math.max(flushed, written - capacity); sample < written; sample++) {
+            final int index = index(sample);
+            final int offset = HEADER_SIZE + index * RECORD_SIZE;
+            buffer.putLong(offset + RECORD_TIME, times[index]);
+            buffer.putInt(offset + RECORD_ONLINE, online[index]);
+            buffer.putInt(offset + RECORD_ENTITIES, entities[index]);
+            buffer.putFloat(offset + RECORD_TPS, tps[index]);
+            buffer.putFloat(offset + RECORD_MSPT, mspt[index]);
+            buffer.putLong(offset + RECORD_RAM_USED, ramUsed[index]);
+        }
+
+        // Written last so a crash in between never exposes records that were not copied
+        buffer.putInt(HEADER_PEAK_ONLINE, peakOnline);
+        buffer.putLong(HEADER_WRITTEN, written);
+        flushed = written;
+    }
+
+    private @NotNull Aggregates publish() {
+        final double[] averageTps = new double[windows.length];
+        final double[] minTps = new double[windows.length];
+        final int[] peakOnline = new int[windows.length];
+
+        for (int window = 0; window < windows.length; window++) {
+            averageTps[window] = windows[window].getAverageTps();
+            minTps[window] = windows[window].getMinTps();
+            peakOnline[window] = windows[window].getPeakOnline();
+        }
+
+        return new Aggregates(averageTps, minTps, peakOnline, this.peakOnline, peakOnlineToday, todayEnd);
+    }
+
+    /**
+     * @param window window
+     * @return average tps of the samples in the window, {@code -1} if there is none
+     */
+    public double getAverageTps(@NotNull final Window window) {
+        return aggregates.averageTps[window.ordinal()];
+    }
+
+    /**
+     * @param window window
+     * @return lowest tps of the samples in the window, {@code -1} if there is none
+     */
+    public double getMinTps(@NotNull final Window window) {
+        return aggregates.minTps[window.ordinal()];
+    }
+
+    /**
+     * @param window window
+     * @return most online players of the samples in the window, {@code -1} if there is none
+     */
+    public int getPeakOnline(@NotNull final Window window) {
+        return aggregates.peakOnline[window.ordinal()];
+    }
+
+    /**
+     * @param now current time in milliseconds since the epoch
+     * @return most online players of the samples taken today
+     */
+    public int getPeakOnlineToday(final long now) {
+        final Aggregates aggregates = this.aggregates;
+        return (now >= aggregates.todayEnd) ? 0 : aggregates.peakOnlineToday;
+    }
+
+    /**
+     * @return most online players of all samples
+     */
+    public int getPeakOnlineAllTime() {
+        return aggregates.peakOnlineAllTime;
+    }
+
+    /**
+     * Aggregates of a window, the samples in the window are {@code [start, end)}
+     */
+    private final class WindowState {
+
+        private final long duration;
+        private final SampleQueue minTps = new SampleQueue(capacity);
+        private final SampleQueue maxOnline = new SampleQueue(capacity);
+        private long start;
+        private long tpsSum;
+        private int count;
+
+        private WindowState(final long duration) {
+            this.duration = duration;
+        }
+
+        private void add(final long sample) {
+            final int index = index(sample);
+            tpsSum += scaledTps(index);
+            count++;
+
+            // Samples that can't be the min (or max) anymore while this one is in the window are dropped
+            while (!minTps.isEmpty() && tps[index(minTps.peekLast())] >= tps[index]) {
+                minTps.pollLast();
+            }
+
+            while (!maxOnline.isEmpty() && online[index(maxOnline.peekLast())] <= online[index]) {
+                maxOnline.pollLast();
+            }
+
+            minTps.addLast(sample);
+            maxOnline.addLast(sample);
+        }
+
+        /**
+         * Evict the samples before {@code from}, and the ones taken before {@code since}
+         *
+         * @param from  first sample to keep
+         * @param end   sample after the last one in the window
+         * @param since oldest time to keep, in milliseconds since the epoch
+         */
+        private void evict(final long from, final long end, final long since) {
+            while (start < end && (start < from || times[index(start)] < since)) {
+                final int index = index(start);
+                tpsSum -= scaledTps(index);
+                count--;
+
+                if (!minTps.isEmpty() && minTps.peekFirst() == start) {
+                    minTps.pollFirst();
+                }
+
+                if (!maxOnline.isEmpty() && maxOnline.peekFirst() == start) {
+                    maxOnline.pollFirst();
+                }
+
+                start++;
+            }
+        }
+
+        private double getAverageTps() {
+            return (count == 0) ? -1 : (double) tpsSum / TPS_SCALE / count;
+        }
+
+        private double getMinTps() {
+            return minTps.isEmpty() ? -1 : tps[index(minTps.peekFirst())];
+        }
+
+        private int getPeakOnline() {
+            return maxOnline.isEmpty() ? -1 : online[index(maxOnline.peekFirst())];
+        }
+
+    }
+
+    /**
+     * Bounded double-ended queue of sample numbers, without boxing
+     */
+    private static final class SampleQueue {
+
+        private final long[] samples;
+        private int head;
+        private int size;
+
+        private SampleQueue(final int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        private long peekFirst() {
+            return samples[head];
+        }
+
+        private long peekLast() {
+            return samples[(head + size - 1) % samples.length];
+        }
+
+        private void pollFirst() {
+            head = (head + 1) % samples.length;
+            size--;
+        }
+
+        private void pollLast() {
+            size--;
+        }
+
+        private void addLast(final long sample) {
+            samples[(head + size) % samples.length] = sample;
+            size++;
+        }
+
+    }
+
+    /**
+     * Aggregates after a sample, published at once so they are consistent with each other
+     */
+    private static final class Aggregates {
+
+        private final double[] averageTps;
+        private final double[] minTps;
+        private final int[] peakOnline;
+        private final int peakOnlineAllTime;
+        private final int peakOnlineToday;
+        private final long todayEnd;
+
+        private Aggregates(
+            @NotNull final double[] averageTps, @NotNull final double[] minTps, @NotNull final int[] peakOnline,
+            final int peakOnlineAllTime, final int peakOnlineToday, final long todayEnd
+        ) {
+            this.averageTps = averageTps;
+            this.minTps = minTps;
+            this.peakOnline = peakOnline;
+            this.peakOnlineAllTime = peakOnlineAllTime;
+            this.peakOnlineToday = peakOnlineToday;
+            this.todayEnd = todayEnd;
+        }
+
+    }
+
+}
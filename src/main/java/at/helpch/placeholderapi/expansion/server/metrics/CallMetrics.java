@@ -0,0 +1,204 @@
+package at.helpch.placeholderapi.expansion.server.metrics;
+
+import at.helpch.placeholderapi.expansion.server.resolver.PlaceholderResolver;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the calls and the latency of the placeholders per family (e.g. {@code online_<world>} is part of the
+ * {@code online} family), with {@link LongAdder}s so that concurrent requests don't contend on the same counter.
+ * <br/>
+ * Calls slower than the threshold are recorded as Flight Recorder events if the JVM supports them.
+ */
+public final class CallMetrics {
+
+    /**
+     * Latencies are stored in log buckets with {@code 2^SUB_BUCKET_BITS} sub-buckets per power of two, latencies
+     * longer than {@code 2^MAX_EXPONENT} nanoseconds (about 18 minutes) are counted in the last bucket
+     */
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final Map<String, Family> families = new ConcurrentHashMap<>();
+    private final long slowCallThreshold;
+    private final boolean flightRecorder;
+
+    /**
+     * Counters of a family
+     */
+    private static final class Family {
+
+        private final String name;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder compilations = new LongAdder();
+        private final LongAdder[] latencies = new LongAdder[BUCKETS];
+
+        private Family(@NotNull final String name) {
+            this.name = name;
+
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                latencies[bucket] = new LongAdder();
+            }
+        }
+
+    }
+
+    /**
+     * @param slowCallThreshold calls that take at least this many nanoseconds are recorded as Flight Recorder events
+     * @param flightRecorder    whether the JVM can record Flight Recorder events, see
+     *                          {@link at.helpch.placeholderapi.expansion.server.util.Capabilities#hasFlightRecorder()}
+     */
+    public CallMetrics(final long slowCallThreshold, final boolean flightRecorder) {
+        this.slowCallThreshold = slowCallThreshold;
+        this.flightRecorder = flightRecorder;
+    }
+
+    private static int bucket(final long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) Math.max(nanos, 0);
+        }
+
+        final int exponent = Math.min(63 - Long.numberOfLeadingZeros(nanos), MAX_EXPONENT);
+        final int subBucket = (int) (Math.min(nanos >>> (exponent - SUB_BUCKET_BITS), 2L * SUB_BUCKETS - 1) & (SUB_BUCKETS - 1));
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long bucketUpperBound(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        final int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final long subBucket = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    private @NotNull Family getFamily(@NotNull final String family) {
+        return families.computeIfAbsent(family, Family::new);
+    }
+
+    /**
+     * Record that some params had to be compiled because they were not in the cache
+     *
+     * @param family family of the params
+     */
+    public void recordCompilation(@NotNull final String family) {
+        getFamily(family).compilations.increment();
+    }
+
+    /**
+     * Wrap a resolver so that its calls are counted and timed
+     *
+     * @param family   family of the params
+     * @param params   params the resolver was compiled from
+     * @param resolver resolver
+     * @return instrumented resolver
+     */
+    public @NotNull PlaceholderResolver instrument(
+        @NotNull final String family, @NotNull final String params, @NotNull final PlaceholderResolver resolver
+    ) {
+        final Family counters = getFamily(family);
+
+        return (player, snapshot, now) -> {
+            final long start = System.nanoTime();
+
+            try {
+                return resolver.resolve(player, snapshot, now);
+            } finally {
+                final long elapsed = System.nanoTime() - start;
+                counters.calls.increment();
+                counters.latencies[bucket(elapsed)].increment();
+
+                if (flightRecorder && elapsed >= slowCallThreshold) {
+                    SlowCallEvent.emit(family, params, elapsed);
+                }
+            }
+        };
+    }
+
+    /**
+     * @param family family
+     * @return calls of the family, {@code 0} if it was never requested
+     */
+    public long getCalls(@NotNull final String family) {
+        final Family counters = families.get(family);
+        return (counters == null) ? 0 : counters.calls.sum();
+    }
+
+    /**
+     * Get a percentile of the latency of a family, rounded up to the bucket it falls in
+     *
+     * @param family     family
+     * @param percentile percentile between 0 and 1
+     * @return latency in nanoseconds, {@code -1} if the family was never requested
+     */
+    public long getPercentile(@NotNull final String family, final double percentile) {
+        final Family counters = families.get(family);
+        return (counters == null) ? -1 : getPercentile(counters, percentile);
+    }
+
+    private static long getPercentile(@NotNull final Family family, final double percentile) {
+        final long[] latencies = new long[BUCKETS];
+        long total = 0;
+
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            latencies[bucket] = family.latencies[bucket].sum();
+            total += latencies[bucket];
+        }
+
+        if (total == 0) {
+            return -1;
+        }
+
+        final long rank = (long) Math.ceil(total * percentile);
+        long seen = 0;
+
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += latencies[bucket];
+
+            if (seen >= rank) {
+                return bucketUpperBound(bucket);
+            }
+        }
+
+        return bucketUpperBound(BUCKETS - 1);
+    }
+
+    /**
+     * Describe the counters of every family, the most called first
+     *
+     * @return one line per family
+     */
+    public @NotNull List<String> dump() {
+        final List<Family> sorted = new ArrayList<>(families.values());
+        sorted.sort(Comparator.comparingLong((Family family) -> family.calls.sum()).reversed());
+
+        final List<String> lines = new ArrayList<>(sorted.size());
+
+        for (final Family family : sorted) {
+            final long calls = family.calls.sum();
+            final long compilations = family.compilations.sum();
+
+            lines.add(String.format(
+                "%s: calls=%d hit_rate=%s p50=%dns p99=%dns",
+                family.name, calls, formatHitRate(calls, compilations),
+                getPercentile(family, 0.50), getPercentile(family, 0.99)
+            ));
+        }
+
+        return lines;
+    }
+
+    private static @NotNull String formatHitRate(final long calls, final long compilations) {
+        return (calls == 0) ? "-" : String.format("%.2f%%", 100.0 * Math.max(calls - compilations, 0) / calls);
+    }
+
+}
@@ -0,0 +1,299 @@
+package at.helpch.placeholderapi.expansion.server.metrics;
+
+import at.helpch.placeholderapi.expansion.server.sampler.TickSampler;
+import at.helpch.placeholderapi.expansion.server.snapshot.ServerSnapshot;
+import at.helpch.placeholderapi.expansion.server.snapshot.WorldSnapshot;
+import at.helpch.placeholderapi.expansion.server.util.Threads;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Serves the latest sampled values in the OpenMetrics text format over HTTP, for Prometheus and compatible scrapers.
+ * <br/>
+ * Requests are handled one at a time on a daemon thread, every response is rendered into the same buffer straight
+ * from the {@link ServerSnapshot} and the {@link TickSampler}, without going through the placeholders.
+ */
+public final class OpenMetricsExporter {
+
+    private static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private final Supplier<ServerSnapshot> snapshots;
+    private final TickSampler tickSampler;
+    private final Runtime runtime = Runtime.getRuntime();
+    private final Buffer buffer = new Buffer();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param snapshots   supplier of the latest snapshot
+     * @param tickSampler tick sampler for the mspt
+     */
+    public OpenMetricsExporter(@NotNull final Supplier<ServerSnapshot> snapshots, @NotNull final TickSampler tickSampler) {
+        this.snapshots = snapshots;
+        this.tickSampler = tickSampler;
+    }
+
+    /**
+     * Start serving the metrics on {@code http://<host>:<port>/metrics}
+     *
+     * @param host address to bind to
+     * @param port port to bind to
+     * @throws IOException if the address can't be bound
+     */
+    public void start(@NotNull final String host, final int port) throws IOException {
+        final HttpServer server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        final ExecutorService executor = Executors.newSingleThreadExecutor(
+            Threads.newFactory("PlaceholderAPI-server-metrics-exporter")
+        );
+
+        server.createContext("/metrics", this::handle);
+        server.setExecutor(executor);
+        server.start();
+
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * Stop serving the metrics
+     */
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private void handle(@NotNull final HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            // Only called from the single thread of the executor, so the buffer is never shared
+            buffer.reset();
+            render(snapshots.get());
+
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, buffer.size);
+
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(buffer.bytes, 0, buffer.size);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void render(@NotNull final ServerSnapshot snapshot) {
+        gauge("minecraft_tps", "Ticks per second over the last 1, 5 and 15 minutes");
+        sample("minecraft_tps", "window", "1m", snapshot.tps(0));
+        sample("minecraft_tps", "window", "5m", snapshot.tps(1));
+        sample("minecraft_tps", "window", "15m", snapshot.tps(2));
+
+        // Without the tick events the mspt is the interval between ticks, which would read as a lagging server
+        if (tickSampler.measuresDurations()) {
+            gauge("minecraft_mspt", "Average milliseconds per tick over the last 100 ticks");
+            sample("minecraft_mspt", tickSampler.getMspt());
+            gauge("minecraft_mspt_percentile", "Percentiles of the milliseconds per tick over the last 15 minutes");
+            sample("minecraft_mspt_percentile", "percentile", "95", tickSampler.getPercentileMspt(0.95));
+            sample("minecraft_mspt_percentile", "percentile", "99", tickSampler.getPercentileMspt(0.99));
+        }
+
+        gauge("minecraft_memory_used_bytes", "Heap used by the server");
+        sample("minecraft_memory_used_bytes", runtime.totalMemory() - runtime.freeMemory());
+        gauge("minecraft_memory_committed_bytes", "Heap committed by the JVM");
+        sample("minecraft_memory_committed_bytes", runtime.totalMemory());
+        gauge("minecraft_memory_max_bytes", "Heap the JVM can use at most");
+        sample("minecraft_memory_max_bytes", runtime.maxMemory());
+
+        gauge("minecraft_players_online", "Online players");
+        sample("minecraft_players_online", snapshot.online());
+        gauge("minecraft_players_max", "Max players");
+        sample("minecraft_players_max", snapshot.maxPlayers());
+
+        worldGauge(snapshot, "minecraft_world_players", "Players in a world", WorldSnapshot::players);
+        worldGauge(snapshot, "minecraft_world_chunks_loaded", "Loaded chunks in a world", WorldSnapshot::loadedChunks);
+        worldGauge(snapshot, "minecraft_world_chunks_force_loaded", "Force loaded chunks in a world", WorldSnapshot::forceLoadedChunks);
+        worldGauge(snapshot, "minecraft_world_entities", "Entities in a world", WorldSnapshot::entities);
+        worldGauge(snapshot, "minecraft_world_living_entities", "Living entities in a world", WorldSnapshot::livingEntities);
+
+        buffer.append("# EOF\n");
+    }
+
+    private void gauge(@NotNull final String name, @NotNull final String help) {
+        buffer.append("# TYPE ").append(name).append(" gauge\n");
+        buffer.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    }
+
+    private void worldGauge(
+        @NotNull final ServerSnapshot snapshot, @NotNull final String name, @NotNull final String help,
+        @NotNull final ToLongFunction<WorldSnapshot> value
+    ) {
+        gauge(name, help);
+
+        for (final WorldSnapshot world : snapshot.worlds().values()) {
+            sample(name, "world", world.name(), value.applyAsLong(world));
+        }
+    }
+
+    private void sample(@NotNull final String name, final long value) {
+        buffer.append(name).append(' ').append(value).append('\n');
+    }
+
+    private void sample(@NotNull final String name, final double value) {
+        buffer.append(name).append(' ').append(value).append('\n');
+    }
+
+    private void sample(@NotNull final String name, @NotNull final String label, @NotNull final String labelValue, final long value) {
+        buffer.append(name).append('{').append(label).append("=\"").appendEscaped(labelValue).append("\"} ").append(value).append('\n');
+    }
+
+    private void sample(@NotNull final String name, @NotNull final String label, @NotNull final String labelValue, final double value) {
+        buffer.append(name).append('{').append(label).append("=\"").appendEscaped(labelValue).append("\"} ").append(value).append('\n');
+    }
+
+    /**
+     * Growable byte buffer that writes numbers without allocating, only ASCII is written as is, other characters
+     * (e.g. in world names) are encoded in UTF-8
+     */
+    private static final class Buffer {
+
+        /**
+         * Doubles are written with 3 decimals
+         */
+        private static final long DECIMALS_SCALE = 1_000;
+
+        private byte[] bytes = new byte[8_192];
+        private int size;
+
+        private void reset() {
+            size = 0;
+        }
+
+        private void ensureCapacity(final int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+
+        private @NotNull Buffer append(final char ascii) {
+            ensureCapacity(1);
+            bytes[size++] = (byte) ascii;
+            return this;
+        }
+
+        private @NotNull Buffer append(@NotNull final String string) {
+            ensureCapacity(string.length() * 3);
+
+            for (int index = 0; index < string.length(); index++) {
+                final char character = string.charAt(index);
+
+                if (character < 0x80) {
+                    bytes[size++] = (byte) character;
+                } else {
+                    appendNonAscii(string, index);
+                    return this;
+                }
+            }
+
+            return this;
+        }
+
+        /**
+         * Encode the end of a string that has non ASCII characters, this allocates but only happens for labels
+         */
+        private void appendNonAscii(@NotNull final String string, final int from) {
+            final byte[] encoded = string.substring(from).getBytes(StandardCharsets.UTF_8);
+            ensureCapacity(encoded.length);
+            System.arraycopy(encoded, 0, bytes, size, encoded.length);
+            size += encoded.length;
+        }
+
+        /**
+         * Append a label value, escaping {@code \}, {@code "} and new lines
+         */
+        private @NotNull Buffer appendEscaped(@NotNull final String value) {
+            if (value.indexOf('\\') == -1 && value.indexOf('"') == -1 && value.indexOf('\n') == -1) {
+                return append(value);
+            }
+
+            return append(value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"));
+        }
+
+        private @NotNull Buffer append(long value) {
+            if (value == Long.MIN_VALUE) {
+                return append(Long.toString(value));
+            }
+
+            ensureCapacity(20);
+
+            if (value < 0) {
+                bytes[size++] = '-';
+                value = -value;
+            }
+
+            final int start = size;
+
+            do {
+                bytes[size++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+
+            // Digits were written from the least significant one
+            for (int left = start, right = size - 1; left < right; left++, right--) {
+                final byte digit = bytes[left];
+                bytes[left] = bytes[right];
+                bytes[right] = digit;
+            }
+
+            return this;
+        }
+
+        private @NotNull Buffer append(final double value) {
+            if (Double.isNaN(value)) {
+                return append("NaN");
+            }
+
+            if (Double.isInfinite(value)) {
+                return append(value > 0 ? "+Inf" : "-Inf");
+            }
+
+            final long scaled = Math.round(Math.abs(value) * DECIMALS_SCALE);
+
+            if (value < 0 && scaled != 0) {
+                append('-');
+            }
+
+            append(scaled / DECIMALS_SCALE).append('.');
+
+            final long fraction = scaled % DECIMALS_SCALE;
+
+            for (long scale = DECIMALS_SCALE / 10; scale > 0; scale /= 10) {
+                append((char) ('0' + fraction / scale % 10));
+            }
+
+            return this;
+        }
+
+    }
+
+}
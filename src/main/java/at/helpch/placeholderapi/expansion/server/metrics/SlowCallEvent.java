@@ -0,0 +1,46 @@
+package at.helpch.placeholderapi.expansion.server.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Flight Recorder event for a placeholder that took longer than the configured threshold, only loaded if the JVM has
+ * Flight Recorder
+ */
+@Name("at.helpch.placeholderapi.expansion.server.SlowCall")
+@Label("Slow Placeholder")
+@Category({"PlaceholderAPI", "Server Expansion"})
+@Description("A placeholder of the server expansion took longer than the configured threshold")
+@StackTrace(false)
+final class SlowCallEvent extends Event {
+
+    @Label("Family")
+    String family;
+
+    @Label("Params")
+    String params;
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+
+    static void emit(@NotNull final String family, @NotNull final String params, final long elapsed) {
+        final SlowCallEvent event = new SlowCallEvent();
+
+        if (!event.isEnabled()) {
+            return;
+        }
+
+        event.family = family;
+        event.params = params;
+        event.elapsed = elapsed;
+        event.commit();
+    }
+
+}
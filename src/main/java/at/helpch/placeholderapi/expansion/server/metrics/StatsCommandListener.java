@@ -0,0 +1,56 @@
+package at.helpch.placeholderapi.expansion.server.metrics;
+
+import com.google.common.cache.CacheStats;
+import org.bukkit.command.CommandSender;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.server.ServerCommandEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Console command that prints the {@link CallMetrics} and the statistics of the caches, the expansion can't register
+ * commands so it listens to the commands sent from the console
+ */
+public final class StatsCommandListener implements Listener {
+
+    public static final String COMMAND = "papi-server-stats";
+
+    private final CallMetrics callMetrics;
+    private final Map<String, Supplier<CacheStats>> caches;
+
+    /**
+     * @param callMetrics metrics to print
+     * @param caches      caches to print, by name
+     */
+    public StatsCommandListener(@NotNull final CallMetrics callMetrics, @NotNull final Map<String, Supplier<CacheStats>> caches) {
+        this.callMetrics = callMetrics;
+        this.caches = caches;
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
+    public void onServerCommand(@NotNull final ServerCommandEvent event) {
+        if (!event.getCommand().trim().equalsIgnoreCase(COMMAND)) {
+            return;
+        }
+
+        event.setCancelled(true);
+
+        final CommandSender sender = event.getSender();
+        sender.sendMessage("[server] Placeholder calls:");
+        callMetrics.dump().forEach(line -> sender.sendMessage("  " + line));
+        sender.sendMessage("[server] Caches:");
+
+        for (final Map.Entry<String, Supplier<CacheStats>> cache : caches.entrySet()) {
+            final CacheStats stats = cache.getValue().get();
+            sender.sendMessage(String.format(
+                "  %s: requests=%d hit_rate=%.2f%% evictions=%d",
+                cache.getKey(), stats.requestCount(), 100 * stats.hitRate(), stats.evictionCount()
+            ));
+        }
+    }
+
+}
@@ -0,0 +1,31 @@
+package at.helpch.placeholderapi.expansion.server.network;
+
+/**
+ * Memory fences for the memory-mapped file, whose plain reads and writes could otherwise be reordered by the JIT or
+ * the processor around the sequence numbers
+ * <br/>
+ * Java 8 has no public API that orders the plain accesses of a buffer, so the network stats are not available on it.
+ * Replaced on Java 17 by {@code src/java17}, which uses the {@code VarHandle} fences.
+ */
+final class Fences {
+
+    /**
+     * @return whether the fences are available on this Java version
+     */
+    static boolean isAvailable() {
+        return false;
+    }
+
+    static void loadFence() {
+        throw new UnsupportedOperationException("Fences require Java 17");
+    }
+
+    static void storeFence() {
+        throw new UnsupportedOperationException("Fences require Java 17");
+    }
+
+    static void spinWait() {
+        Thread.yield();
+    }
+
+}
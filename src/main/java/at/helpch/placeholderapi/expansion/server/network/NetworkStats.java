@@ -0,0 +1,361 @@
+package at.helpch.placeholderapi.expansion.server.network;
+
+import at.helpch.placeholderapi.expansion.server.sampler.TickSampler;
+import at.helpch.placeholderapi.expansion.server.snapshot.ServerSnapshot;
+import at.helpch.placeholderapi.expansion.server.util.Logging;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Shares the core values of the servers running on the same machine through a memory-mapped file, so that each one
+ * can show network-wide totals without a proxy round trip or an external service.
+ * <br/>
+ * Every server owns one slot of the file and is the only one writing to it, each slot is guarded by a seqlock: the
+ * writer makes the sequence odd while it writes and even once done, a reader retries if the sequence was odd or
+ * changed while it read. A slot whose heartbeat is older than the timeout belongs to a server that is not alive.
+ * <br/>
+ * Slots are claimed in {@link #open()} while holding a lock on the file, the claim writes a random owner id and a
+ * heartbeat so that no other server can claim the slot while this one is alive.
+ * <br/>
+ * {@link #run()} writes the slot of this server then reads every slot, the totals are published at once.
+ * <br/>
+ * Only available from Java 17, see {@link #isSupported()}.
+ */
+public final class NetworkStats implements Runnable {
+
+    public static final int SLOTS = 64;
+
+    private static final long MAGIC = 0x5041_5049_5356_5201L;
+
+    /**
+     * Layout of the file: a header of {@value #SLOT_SIZE} bytes with the magic number, then the slots, each on its own
+     * cache line so that servers don't write to the same line
+     */
+    private static final int SLOT_SIZE = 64;
+    private static final int FILE_SIZE = SLOT_SIZE * (SLOTS + 1);
+
+    private static final int SEQUENCE = 0;
+    private static final int HEARTBEAT = 8;
+    private static final int ONLINE = 16;
+    private static final int MAX_PLAYERS = 20;
+    private static final int TPS = 24;
+    private static final int MSPT = 32;
+    private static final int RAM_USED = 40;
+    private static final int RAM_MAX = 48;
+    private static final int OWNER = 56;
+
+    /**
+     * Reads of a slot that is being written are retried this many times before the slot is skipped
+     */
+    private static final int READ_ATTEMPTS = 16;
+
+    private static final Totals NO_TOTALS = new Totals(-1, -1, -1, -1);
+
+    private final Path file;
+    private final int requestedSlot;
+    private final long owner = newOwner();
+    private final long timeout;
+    private final Supplier<ServerSnapshot> snapshots;
+    private final TickSampler tickSampler;
+    private final Runtime runtime = Runtime.getRuntime();
+
+    private MappedByteBuffer buffer;
+    private int slot = -1;
+    private volatile Totals totals = NO_TOTALS;
+
+    /**
+     * @param file        shared file, the same for every server of the machine
+     * @param slot        slot of this server, between {@code 0} and {@value #SLOTS} (exclusive), or {@code -1} to claim
+     *                    the first free slot
+     * @param timeout     time after which a server that didn't write its slot is not alive, in milliseconds
+     * @param snapshots   supplier of the latest snapshot
+     * @param tickSampler tick sampler for the mspt
+     */
+    public NetworkStats(
+        @NotNull final Path file, final int slot, final long timeout,
+        @NotNull final Supplier<ServerSnapshot> snapshots, @NotNull final TickSampler tickSampler
+    ) {
+        if (slot < -1 || slot >= SLOTS) {
+            throw new IllegalArgumentException("Slot must be -1 or between 0 and " + (SLOTS - 1) + ", got " + slot);
+        }
+
+        this.file = file;
+        this.requestedSlot = slot;
+        this.timeout = timeout;
+        this.snapshots = snapshots;
+        this.tickSampler = tickSampler;
+    }
+
+    /**
+     * Whether the stats can be shared on this Java version, the seqlock needs the memory fences of Java 17
+     *
+     * @return true from Java 17
+     */
+    public static boolean isSupported() {
+        return Fences.isAvailable();
+    }
+
+    private static long newOwner() {
+        final long owner = UUID.randomUUID().getMostSignificantBits();
+        return (owner == 0) ? 1 : owner;
+    }
+
+    /**
+     * Map the shared file, creating it if it doesn't exist yet, and claim the slot of this server
+     *
+     * @throws IOException if the file can't be mapped, if it isn't a stats file, or if the slot is used by another
+     *                     server that is alive
+     * @throws UnsupportedOperationException if the stats can't be shared on this Java version
+     */
+    public synchronized void open() throws IOException {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("The network stats require Java 17 or above");
+        }
+
+        final Path parent = file.toAbsolutePath().getParent();
+
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+            buffer.order(ByteOrder.nativeOrder());
+
+            // Servers starting at the same time would otherwise claim the same slot
+            try (FileLock ignored = channel.lock(0, SLOT_SIZE, false)) {
+                this.slot = claim(buffer);
+                this.buffer = buffer;
+                write(owner, System.currentTimeMillis(), 0, 0, 0, 0, 0, 0);
+            } catch (IOException | RuntimeException e) {
+                this.buffer = null;
+                throw e;
+            }
+        }
+    }
+
+    private int claim(@NotNull final MappedByteBuffer buffer) throws IOException {
+        final long magic = buffer.getLong(0);
+
+        if (magic == 0) {
+            buffer.putLong(0, MAGIC);
+        } else if (magic != MAGIC) {
+            throw new IOException("\"" + file + "\" is not a network stats file");
+        }
+
+        final long now = System.currentTimeMillis();
+
+        if (requestedSlot != -1) {
+            if (isClaimed(buffer, requestedSlot, now)) {
+                throw new IOException("Slot " + requestedSlot + " is used by another server, set a different network.slot or -1");
+            }
+
+            return requestedSlot;
+        }
+
+        for (int slot = 0; slot < SLOTS; slot++) {
+            if (!isClaimed(buffer, slot, now)) {
+                return slot;
+            }
+        }
+
+        throw new IOException("Every slot is used by a server that is alive");
+    }
+
+    /**
+     * Whether a slot belongs to another server that is alive, the heartbeat and the owner are aligned longs written by a
+     * single server so they can be read without the seqlock
+     */
+    private boolean isClaimed(@NotNull final MappedByteBuffer buffer, final int slot, final long now) {
+        final long heartbeat = buffer.getLong(offset(slot) + HEARTBEAT);
+        final long slotOwner = buffer.getLong(offset(slot) + OWNER);
+        return slotOwner != owner && heartbeat != 0 && now - heartbeat <= timeout;
+    }
+
+    /**
+     * Release the slot of this server and drop the mapping of the file
+     * <br/>
+     * There is no API to unmap a file, the mapping is released once the buffer is garbage collected: after a reload
+     * the previous mapping stays until the next collection, it only holds the few kilobytes of the file.
+     */
+    public synchronized void close() {
+        if (buffer != null) {
+            if (buffer.getLong(offset(slot) + OWNER) == owner) {
+                write(0, 0, 0, 0, 0, 0, 0, 0);
+            }
+
+            buffer = null;
+        }
+
+        totals = NO_TOTALS;
+    }
+
+    /**
+     * Write the slot of this server and read the totals, synchronized with {@link #close()} so that the slot only has
+     * one writer
+     */
+    @Override
+    public synchronized void run() {
+        if (buffer == null) {
+            return;
+        }
+
+        if (buffer.getLong(offset(slot) + OWNER) != owner) {
+            // This server didn't write its slot for longer than the timeout, e.g. it was frozen, and lost it
+            Logging.warn("Slot {0} of \"{1}\" was claimed by another server, the stats of this server are no longer shared", String.valueOf(slot), file);
+            close();
+            return;
+        }
+
+        try {
+            final ServerSnapshot snapshot = snapshots.get();
+            final long now = System.currentTimeMillis();
+
+            write(
+                owner, now, snapshot.online(), snapshot.maxPlayers(), snapshot.tps(0),
+                tickSampler.measuresDurations() ? tickSampler.getMspt() : -1,
+                runtime.totalMemory() - runtime.freeMemory(), runtime.maxMemory()
+            );
+            totals = read(now);
+        } catch (RuntimeException exception) {
+            Logging.error(exception, "Could not share the stats of the server in \"{0}\"", file);
+        }
+    }
+
+    private void write(
+        final long owner, final long heartbeat, final int online, final int maxPlayers, final double tps, final double mspt,
+        final long ramUsed, final long ramMax
+    ) {
+        final MappedByteBuffer buffer = this.buffer;
+        final int offset = offset(slot);
+        final long sequence = buffer.getLong(offset + SEQUENCE);
+
+        // Odd while the slot is being written
+        buffer.putLong(offset + SEQUENCE, sequence | 1);
+        Fences.storeFence();
+
+        buffer.putLong(offset + HEARTBEAT, heartbeat);
+        buffer.putInt(offset + ONLINE, online);
+        buffer.putInt(offset + MAX_PLAYERS, maxPlayers);
+        buffer.putDouble(offset + TPS, tps);
+        buffer.putDouble(offset + MSPT, mspt);
+        buffer.putLong(offset + RAM_USED, ramUsed);
+        buffer.putLong(offset + RAM_MAX, ramMax);
+        buffer.putLong(offset + OWNER, owner);
+
+        Fences.storeFence();
+        buffer.putLong(offset + SEQUENCE, (sequence | 1) + 1);
+    }
+
+    private @NotNull Totals read(final long now) {
+        final MappedByteBuffer buffer = this.buffer;
+        int online = 0;
+        int maxPlayers = 0;
+        int alive = 0;
+        double minTps = Double.MAX_VALUE;
+
+        for (int slot = 0; slot < SLOTS; slot++) {
+            final int offset = offset(slot);
+
+            for (int attempt = 0; attempt < READ_ATTEMPTS; attempt++) {
+                final long sequence = buffer.getLong(offset + SEQUENCE);
+
+                if ((sequence & 1) != 0) {
+                    Fences.spinWait();
+                    continue;
+                }
+
+                Fences.loadFence();
+                final long heartbeat = buffer.getLong(offset + HEARTBEAT);
+                final int slotOnline = buffer.getInt(offset + ONLINE);
+                final int slotMaxPlayers = buffer.getInt(offset + MAX_PLAYERS);
+                final double slotTps = buffer.getDouble(offset + TPS);
+                Fences.loadFence();
+
+                if (buffer.getLong(offset + SEQUENCE) != sequence) {
+                    continue;
+                }
+
+                if (heartbeat != 0 && now - heartbeat <= timeout) {
+                    online += slotOnline;
+                    maxPlayers += slotMaxPlayers;
+                    alive++;
+                    minTps = Math.min(minTps, slotTps);
+                }
+
+                break;
+            }
+        }
+
+        return (alive == 0) ? NO_TOTALS : new Totals(online, maxPlayers, alive, minTps);
+    }
+
+    private static int offset(final int slot) {
+        return SLOT_SIZE * (slot + 1);
+    }
+
+    /**
+     * @return slot of this server, {@code -1} if the file isn't open
+     */
+    public synchronized int getSlot() {
+        return (buffer == null) ? -1 : slot;
+    }
+
+    /**
+     * @return online players of the alive servers, {@code -1} if the file couldn't be read
+     */
+    public int getOnline() {
+        return totals.online;
+    }
+
+    /**
+     * @return max players of the alive servers, {@code -1} if the file couldn't be read
+     */
+    public int getMaxPlayers() {
+        return totals.maxPlayers;
+    }
+
+    /**
+     * @return alive servers, {@code -1} if the file couldn't be read
+     */
+    public int getServersAlive() {
+        return totals.alive;
+    }
+
+    /**
+     * @return lowest tps over the last minute of the alive servers, {@code -1} if the file couldn't be read
+     */
+    public double getMinTps() {
+        return totals.minTps;
+    }
+
+    /**
+     * Totals of a read, published at once so they are consistent with each other
+     */
+    private static final class Totals {
+
+        private final int online;
+        private final int maxPlayers;
+        private final int alive;
+        private final double minTps;
+
+        private Totals(final int online, final int maxPlayers, final int alive, final double minTps) {
+            this.online = online;
+            this.maxPlayers = maxPlayers;
+            this.alive = alive;
+            this.minTps = minTps;
+        }
+
+    }
+
+}
@@ -0,0 +1,40 @@
+package at.helpch.placeholderapi.expansion.server.resolver;
+
+import at.helpch.placeholderapi.expansion.server.snapshot.ServerSnapshot;
+import org.bukkit.OfflinePlayer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A placeholder that has already been parsed, with all of its arguments (world name, tps window, time format, ...)
+ * bound, so resolving it does not have to look at the params string again.
+ */
+@FunctionalInterface
+public interface PlaceholderResolver {
+
+    /**
+     * Resolver for params that are not handled by the expansion
+     */
+    PlaceholderResolver UNKNOWN = (player, snapshot, now) -> null;
+
+    /**
+     * Create a resolver that always returns the same value
+     *
+     * @param value value
+     * @return resolver
+     */
+    static @NotNull PlaceholderResolver constant(@Nullable final String value) {
+        return (player, snapshot, now) -> value;
+    }
+
+    /**
+     * Resolve the placeholder
+     *
+     * @param player   player the placeholder is requested for
+     * @param snapshot server metrics the placeholder should be resolved from
+     * @param now      current time in milliseconds since the epoch, the same for every placeholder of a batch
+     * @return value, or {@code null} if the placeholder is invalid
+     */
+    @Nullable String resolve(@Nullable OfflinePlayer player, @NotNull ServerSnapshot snapshot, long now);
+
+}
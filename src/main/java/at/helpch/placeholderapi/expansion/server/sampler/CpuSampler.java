@@ -0,0 +1,215 @@
+package at.helpch.placeholderapi.expansion.server.sampler;
+
+import at.helpch.placeholderapi.expansion.server.util.Logging;
+import at.helpch.placeholderapi.expansion.server.util.Threads;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the cpu usage and the threads of the JVM on its own background thread, so that the cpu time and deadlock
+ * queries never run while a placeholder is requested.
+ * <br/>
+ * Cpu usages are smoothed with an exponentially weighted moving average and kept, like every other value, in a
+ * primitive field.
+ */
+public final class CpuSampler implements Runnable {
+
+    private final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private final com.sun.management.OperatingSystemMXBean sunOsBean;
+    private final MethodHandle cpuLoadGetter;
+    private final int processors = Runtime.getRuntime().availableProcessors();
+    private final long smoothingWindow;
+
+    private ScheduledExecutorService executor;
+
+    private long lastSample = -1;
+    private long lastProcessCpuTime = -1;
+    private long lastMainThreadCpuTime = -1;
+
+    private volatile double processCpu = -1;
+    private volatile double systemCpu = -1;
+    private volatile long mainThreadId = -1;
+    private volatile double mainThreadCpu = -1;
+    private volatile int liveThreads;
+    private volatile int peakThreads;
+    private volatile int deadlockedThreads;
+
+    /**
+     * @param smoothingWindow window of the moving average in milliseconds, {@code 0} to keep the last sample
+     * @param managementBeans whether the JVM has the {@code com.sun.management} extensions of the JMX beans, see
+     *                        {@link at.helpch.placeholderapi.expansion.server.util.Capabilities#hasManagementBeans()}
+     */
+    public CpuSampler(final long smoothingWindow, final boolean managementBeans) {
+        this.smoothingWindow = Math.max(smoothingWindow, 0);
+        this.sunOsBean = (managementBeans && osBean instanceof com.sun.management.OperatingSystemMXBean)
+            ? (com.sun.management.OperatingSystemMXBean) osBean
+            : null;
+        this.cpuLoadGetter = (sunOsBean == null) ? null : getCpuLoadGetter(sunOsBean);
+    }
+
+    /**
+     * Get {@code getCpuLoad()}, which replaced {@code getSystemCpuLoad()} in Java 14
+     *
+     * @param sunOsBean os bean
+     * @return bound getter, or {@code null} before Java 14
+     */
+    private static @Nullable MethodHandle getCpuLoadGetter(@NotNull final com.sun.management.OperatingSystemMXBean sunOsBean) {
+        try {
+            return MethodHandles.publicLookup()
+                .findVirtual(com.sun.management.OperatingSystemMXBean.class, "getCpuLoad", MethodType.methodType(double.class))
+                .bindTo(sunOsBean);
+        } catch (NoSuchMethodException | IllegalAccessException ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * Set the thread whose cpu usage is sampled as the main thread, the main thread cpu is {@code -1} until then
+     *
+     * @param mainThreadId id of the server's main thread
+     */
+    public void setMainThreadId(final long mainThreadId) {
+        this.mainThreadId = mainThreadId;
+    }
+
+    /**
+     * Start sampling on a new background thread
+     *
+     * @param period period in milliseconds
+     */
+    public void start(final long period) {
+        executor = Executors.newSingleThreadScheduledExecutor(
+            Threads.newFactory("PlaceholderAPI-server-cpu-sampler")
+        );
+        executor.scheduleAtFixedRate(this, 0, Math.max(period, 1), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop sampling
+     */
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            sample();
+        } catch (RuntimeException exception) {
+            Logging.error(exception, "Could not sample the cpu usage of the server");
+        }
+    }
+
+    private void sample() {
+        final long now = System.nanoTime();
+        final long elapsed = now - lastSample;
+        final double alpha = (lastSample == -1 || smoothingWindow == 0) ? 1 : 1 - Math.exp(-elapsed / (smoothingWindow * 1_000_000.0));
+
+        if (sunOsBean != null) {
+            final long processCpuTime = sunOsBean.getProcessCpuTime();
+
+            if (lastSample != -1 && lastProcessCpuTime >= 0 && processCpuTime >= 0) {
+                processCpu = smooth(processCpu, (processCpuTime - lastProcessCpuTime) / ((double) elapsed * processors), alpha);
+            }
+
+            final double systemLoad = getSystemCpuLoad();
+            systemCpu = (systemLoad < 0) ? -1 : smooth(systemCpu, systemLoad, alpha);
+            lastProcessCpuTime = processCpuTime;
+        }
+
+        final long mainThreadId = this.mainThreadId;
+
+        if (mainThreadId != -1 && threadBean.isThreadCpuTimeSupported() && threadBean.isThreadCpuTimeEnabled()) {
+            final long mainThreadCpuTime = threadBean.getThreadCpuTime(mainThreadId);
+
+            if (lastSample != -1 && lastMainThreadCpuTime >= 0 && mainThreadCpuTime >= 0) {
+                mainThreadCpu = smooth(mainThreadCpu, (mainThreadCpuTime - lastMainThreadCpuTime) / (double) elapsed, alpha);
+            }
+
+            lastMainThreadCpuTime = mainThreadCpuTime;
+        }
+
+        final long[] deadlocked = threadBean.findDeadlockedThreads();
+        liveThreads = threadBean.getThreadCount();
+        peakThreads = threadBean.getPeakThreadCount();
+        deadlockedThreads = (deadlocked == null) ? 0 : deadlocked.length;
+        lastSample = now;
+    }
+
+    /**
+     * @return cpu usage of the whole system between {@code 0} and {@code 1}, negative if not available
+     */
+    @SuppressWarnings("deprecation")
+    private double getSystemCpuLoad() {
+        if (cpuLoadGetter == null) {
+            return sunOsBean.getSystemCpuLoad();
+        }
+
+        try {
+            return (double) cpuLoadGetter.invokeExact();
+        } catch (Throwable e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Add a sample to a moving average
+     *
+     * @param average current average, negative if there is none yet
+     * @param sample  sample between 0 and 1
+     * @param alpha   weight of the sample
+     * @return new average
+     */
+    private static double smooth(final double average, final double sample, final double alpha) {
+        final double clamped = Math.min(Math.max(sample, 0), 1);
+        return (average < 0) ? clamped : average + alpha * (clamped - average);
+    }
+
+    /**
+     * @return cpu usage of the JVM between 0 and 1 across all processors, {@code -1} if not available
+     */
+    public double getProcessCpu() {
+        return processCpu;
+    }
+
+    /**
+     * @return cpu usage of the whole system between 0 and 1, {@code -1} if not available
+     */
+    public double getSystemCpu() {
+        return systemCpu;
+    }
+
+    /**
+     * @return cpu usage of the main thread between 0 and 1 of one processor, {@code -1} if not available
+     */
+    public double getMainThreadCpu() {
+        return mainThreadCpu;
+    }
+
+    public int getLiveThreads() {
+        return liveThreads;
+    }
+
+    public int getPeakThreads() {
+        return peakThreads;
+    }
+
+    public int getDeadlockedThreads() {
+        return deadlockedThreads;
+    }
+
+}
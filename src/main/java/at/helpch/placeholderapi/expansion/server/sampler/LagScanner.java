@@ -0,0 +1,266 @@
+package at.helpch.placeholderapi.expansion.server.sampler;
+
+import at.helpch.placeholderapi.expansion.server.tracker.ChunkTracker;
+import at.helpch.placeholderapi.expansion.server.util.Logging;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.Hopper;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Looks for the chunks that are the most likely to cause lag, the ones with the most entities and block entities, by
+ * walking the loaded chunks of every world over many ticks. Each {@link #run()} scans chunks until its time budget is
+ * used, so a scan never takes more than about the budget per tick however many chunks are loaded.
+ * <br/>
+ * The chunks are walked through the sections of the {@link ChunkTracker}, one chunk at a time, rather than through
+ * {@link World#getLoadedChunks()}, which copies every loaded chunk of a world at once.
+ * <br/>
+ * The heaviest chunks are kept in a bounded heap during a pass, the results are only published once the pass is
+ * complete. Must be run every tick from the main thread.
+ */
+public final class LagScanner implements Runnable {
+
+    private static final boolean TILE_ENTITIES_WITHOUT_SNAPSHOT = hasTileEntitiesWithoutSnapshot();
+
+    /**
+     * Published before the first pass completes
+     */
+    private static final Result EMPTY = new Result(new ChunkStats[0], 0, 0);
+
+    private static final Comparator<ChunkStats> BY_WEIGHT = Comparator.comparingInt(ChunkStats::weight);
+
+    private static final int SECTION_SIZE = 1 << ChunkTracker.SECTION_SHIFT;
+    private static final int SECTION_CHUNKS = SECTION_SIZE * SECTION_SIZE;
+
+    private final ChunkTracker chunkTracker;
+    private final int top;
+    private final long budget;
+    private final long interval;
+
+    private volatile Result result = EMPTY;
+
+    // State of the pass in progress, only accessed from run()
+    private final PriorityQueue<ChunkStats> heaviest;
+    private List<World> worlds;
+    private int worldIndex;
+    private World world;
+    private long[] sections;
+    private int sectionIndex;
+    private int sectionChunk;
+    private long tileEntities;
+    private long hoppers;
+    private long nextPassAt = System.nanoTime();
+
+    /**
+     * @param chunkTracker chunk tracker, must track the sections
+     * @param top          number of chunks to keep
+     * @param budget       time spent scanning per tick, in nanoseconds
+     * @param interval     minimum time between the start of two passes, in nanoseconds, the first pass starts right away
+     */
+    public LagScanner(@NotNull final ChunkTracker chunkTracker, final int top, final long budget, final long interval) {
+        this.chunkTracker = chunkTracker;
+        this.top = Math.max(top, 1);
+        this.budget = Math.max(budget, 1);
+        this.interval = Math.max(interval, 0);
+        this.heaviest = new PriorityQueue<>(this.top + 1, BY_WEIGHT);
+    }
+
+    private static boolean hasTileEntitiesWithoutSnapshot() {
+        try {
+            Chunk.class.getMethod("getTileEntities", boolean.class);
+            return true;
+        } catch (NoSuchMethodException ignored) {
+            return false;
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            scan();
+        } catch (RuntimeException exception) {
+            Logging.error(exception, "Could not scan the chunks of the server");
+            worlds = null;
+        }
+    }
+
+    private void scan() {
+        final long start = System.nanoTime();
+
+        if (worlds == null) {
+            if (start - nextPassAt < 0) {
+                return;
+            }
+
+            startPass(start);
+        }
+
+        while (System.nanoTime() - start < budget) {
+            if (sections == null || sectionIndex == sections.length) {
+                if (worldIndex == worlds.size()) {
+                    completePass();
+                    return;
+                }
+
+                // Only the keys of the sections are copied, a section holds up to 256 chunks
+                world = worlds.get(worldIndex++);
+                sections = chunkTracker.getSections(world.getName());
+                sectionIndex = 0;
+                sectionChunk = 0;
+                continue;
+            }
+
+            final long section = sections[sectionIndex];
+            final int chunkX = (ChunkTracker.sectionX(section) << ChunkTracker.SECTION_SHIFT) + sectionChunk / SECTION_SIZE;
+            final int chunkZ = (ChunkTracker.sectionZ(section) << ChunkTracker.SECTION_SHIFT) + sectionChunk % SECTION_SIZE;
+
+            if (++sectionChunk == SECTION_CHUNKS) {
+                sectionChunk = 0;
+                sectionIndex++;
+            }
+
+            if (world.isChunkLoaded(chunkX, chunkZ)) {
+                scanChunk(world.getChunkAt(chunkX, chunkZ));
+            }
+        }
+    }
+
+    private void startPass(final long now) {
+        nextPassAt = now + interval;
+        worlds = new ArrayList<>(Bukkit.getWorlds());
+        worldIndex = 0;
+        world = null;
+        sections = null;
+        sectionIndex = 0;
+        sectionChunk = 0;
+        tileEntities = 0;
+        hoppers = 0;
+        heaviest.clear();
+    }
+
+    private void scanChunk(@NotNull final Chunk chunk) {
+        final BlockState[] states = TILE_ENTITIES_WITHOUT_SNAPSHOT ? chunk.getTileEntities(false) : chunk.getTileEntities();
+        final int entities = chunk.getEntities().length;
+        int chunkHoppers = 0;
+
+        for (final BlockState state : states) {
+            if (state instanceof Hopper) {
+                chunkHoppers++;
+            }
+        }
+
+        tileEntities += states.length;
+        hoppers += chunkHoppers;
+
+        final int weight = entities + states.length;
+
+        if (heaviest.size() == top && weight <= heaviest.peek().weight()) {
+            return;
+        }
+
+        if (heaviest.size() == top) {
+            heaviest.poll();
+        }
+
+        heaviest.add(new ChunkStats(chunk.getWorld().getName() + " " + chunk.getX() + "," + chunk.getZ(), entities, states.length));
+    }
+
+    private void completePass() {
+        final ChunkStats[] sorted = heaviest.toArray(new ChunkStats[0]);
+        Arrays.sort(sorted, BY_WEIGHT.reversed());
+
+        result = new Result(sorted, tileEntities, hoppers);
+        worlds = null;
+        world = null;
+        sections = null;
+        heaviest.clear();
+    }
+
+    /**
+     * Get one of the heaviest chunks of the last complete pass
+     *
+     * @param rank rank, starting at 1 for the heaviest
+     * @return chunk, or {@code null} if fewer chunks were scanned
+     */
+    public @Nullable ChunkStats getTopChunk(final int rank) {
+        final ChunkStats[] top = result.top;
+        return (rank < 1 || rank > top.length) ? null : top[rank - 1];
+    }
+
+    /**
+     * @return block entities in all loaded chunks at the last complete pass
+     */
+    public long getTileEntities() {
+        return result.tileEntities;
+    }
+
+    /**
+     * @return hoppers in all loaded chunks at the last complete pass
+     */
+    public long getHoppers() {
+        return result.hoppers;
+    }
+
+    /**
+     * Results of a complete pass, published at once so they are consistent with each other
+     */
+    private static final class Result {
+
+        private final ChunkStats[] top;
+        private final long tileEntities;
+        private final long hoppers;
+
+        private Result(@NotNull final ChunkStats[] top, final long tileEntities, final long hoppers) {
+            this.top = top;
+            this.tileEntities = tileEntities;
+            this.hoppers = hoppers;
+        }
+
+    }
+
+    /**
+     * Entities and block entities of a chunk at the time it was scanned
+     */
+    public static final class ChunkStats {
+
+        private final String location;
+        private final int entities;
+        private final int tileEntities;
+
+        private ChunkStats(@NotNull final String location, final int entities, final int tileEntities) {
+            this.location = location;
+            this.entities = entities;
+            this.tileEntities = tileEntities;
+        }
+
+        /**
+         * @return world name and chunk coordinates, e.g. {@code world 12,-4}
+         */
+        public @NotNull String location() {
+            return location;
+        }
+
+        public int entities() {
+            return entities;
+        }
+
+        public int tileEntities() {
+            return tileEntities;
+        }
+
+        private int weight() {
+            return entities + tileEntities;
+        }
+
+    }
+
+}
@@ -0,0 +1,382 @@
+package at.helpch.placeholderapi.expansion.server.sampler;
+
+import at.helpch.placeholderapi.expansion.server.util.Logging;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.jetbrains.annotations.NotNull;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Samples the memory pools, garbage collectors and allocated bytes of the JVM from {@link #run()}, which is meant to
+ * be scheduled outside of the main thread. Garbage collection pauses are recorded as they happen from the collectors'
+ * notifications, the cycles of the concurrent collectors are not pauses and are skipped.
+ * <br/>
+ * Every value is kept in a primitive field, so reading one is a single field load.
+ */
+public final class MemorySampler implements Runnable {
+
+    /**
+     * Number of pauses kept to compute the longest pause of the {@link PauseWindow windows}
+     */
+    private static final int PAUSES = 256;
+
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private final Map<String, Integer> collectorIndexes = new HashMap<>();
+    private final MemoryPoolMXBean oldGenPool;
+    private final MemoryPoolMXBean metaspacePool;
+    private final BufferPoolMXBean directPool;
+    private final com.sun.management.ThreadMXBean threadBean;
+    private final NotificationListener pauseListener;
+
+    private final long[] pauseTimes = new long[PAUSES];
+    private final long[] pauseDurations = new long[PAUSES];
+    private int pausesWritten;
+
+    /**
+     * Windows requested with {@link #getPauseWindow(long)} by length in nanoseconds, guarded by {@code pauseTimes}
+     */
+    private final Map<Long, PauseWindow> pauseWindows = new HashMap<>();
+
+    private volatile long lastPause = -1;
+    private volatile long[] collectionCounts;
+    private volatile long oldGenUsed = -1;
+    private volatile long metaspaceUsed = -1;
+    private volatile long directMemoryUsed = -1;
+    private volatile double allocationRate = -1;
+
+    /**
+     * Bytes allocated by each thread at the previous sample, only accessed from {@link #run()}
+     */
+    private Map<Long, Long> allocatedBytes = new HashMap<>();
+    private long lastSample = -1;
+
+    /**
+     * @param managementBeans whether the JVM has the {@code com.sun.management} extensions of the JMX beans, see
+     *                        {@link at.helpch.placeholderapi.expansion.server.util.Capabilities#hasManagementBeans()}
+     */
+    public MemorySampler(final boolean managementBeans) {
+        for (int index = 0; index < collectors.size(); index++) {
+            collectorIndexes.put(getKey(collectors.get(index).getName()), index);
+        }
+
+        this.collectionCounts = new long[collectors.size()];
+
+        MemoryPoolMXBean oldGenPool = null;
+        MemoryPoolMXBean metaspacePool = null;
+
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            final String name = pool.getName();
+
+            if (pool.getType() == MemoryType.HEAP && (name.contains("Old") || name.contains("Tenured"))) {
+                oldGenPool = pool;
+            } else if (name.equals("Metaspace")) {
+                metaspacePool = pool;
+            }
+        }
+
+        this.oldGenPool = oldGenPool;
+        this.metaspacePool = metaspacePool;
+        this.directPool = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)
+            .stream()
+            .filter(pool -> pool.getName().equals("direct"))
+            .findFirst()
+            .orElse(null);
+
+        final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        this.threadBean = (managementBeans && isThreadAllocatedMemoryAvailable(threadBean)) ? (com.sun.management.ThreadMXBean) threadBean : null;
+        this.pauseListener = managementBeans ? this::onNotification : null;
+    }
+
+    private static boolean isThreadAllocatedMemoryAvailable(@NotNull final ThreadMXBean threadBean) {
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+            return false;
+        }
+
+        final com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean) threadBean;
+        return sunThreadBean.isThreadAllocatedMemorySupported() && sunThreadBean.isThreadAllocatedMemoryEnabled();
+    }
+
+    /**
+     * Get the placeholder key of a collector (e.g. {@code G1 Young Generation} to {@code g1_young_generation})
+     *
+     * @param name collector name
+     * @return key
+     */
+    private static @NotNull String getKey(@NotNull final String name) {
+        return name.toLowerCase(Locale.ROOT).replace(' ', '_');
+    }
+
+    /**
+     * Start listening to garbage collection notifications
+     */
+    public void start() {
+        if (pauseListener == null) {
+            return;
+        }
+
+        for (final GarbageCollectorMXBean collector : collectors) {
+            if (collector instanceof NotificationEmitter) {
+                ((NotificationEmitter) collector).addNotificationListener(pauseListener, null, null);
+            }
+        }
+    }
+
+    /**
+     * Stop listening to garbage collection notifications
+     */
+    public void stop() {
+        if (pauseListener == null) {
+            return;
+        }
+
+        for (final GarbageCollectorMXBean collector : collectors) {
+            if (collector instanceof NotificationEmitter) {
+                try {
+                    ((NotificationEmitter) collector).removeNotificationListener(pauseListener);
+                } catch (ListenerNotFoundException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether a garbage collection stopped the application threads
+     * <br/>
+     * Concurrent collectors report the whole cycle, most of which runs alongside the application: ZGC and Shenandoah
+     * report their pauses separately ({@code ZGC Pauses}, {@code Shenandoah Pauses}) from their cycles
+     * ({@code ZGC Cycles}, {@code Shenandoah Cycles}), G1 reports its concurrent cycle as {@code G1 Concurrent GC}
+     * and CMS as {@code ConcurrentMarkSweep}.
+     *
+     * @param name   collector name
+     * @param action collection action, e.g. {@code end of minor GC}
+     * @return true if the collection is a pause
+     */
+    private static boolean isPause(@NotNull final String name, @NotNull final String action) {
+        if (name.endsWith(" Cycles") || name.equals("G1 Concurrent GC") || name.equals("ConcurrentMarkSweep")) {
+            return false;
+        }
+
+        return action.equals("end of minor GC") || action.equals("end of major GC") || action.equals("end of GC pause");
+    }
+
+    void onNotification(@NotNull final Notification notification, final Object handback) {
+        if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+            return;
+        }
+
+        final GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+
+        if (!isPause(info.getGcName(), info.getGcAction())) {
+            return;
+        }
+
+        final long duration = info.getGcInfo().getDuration();
+
+        synchronized (pauseTimes) {
+            final int index = pausesWritten++ % PAUSES;
+            pauseTimes[index] = System.currentTimeMillis();
+            pauseDurations[index] = duration;
+
+            if (pausesWritten == 2 * PAUSES) {
+                pausesWritten = PAUSES;
+            }
+
+            for (final PauseWindow pauseWindow : pauseWindows.values()) {
+                pauseWindow.max = Math.max(pauseWindow.max, duration);
+            }
+        }
+
+        lastPause = duration;
+    }
+
+    @Override
+    public void run() {
+        try {
+            sample();
+        } catch (RuntimeException exception) {
+            Logging.error(exception, "Could not sample the memory of the server");
+        }
+    }
+
+    private void sample() {
+        final long[] collectionCounts = new long[collectors.size()];
+
+        for (int index = 0; index < collectionCounts.length; index++) {
+            collectionCounts[index] = collectors.get(index).getCollectionCount();
+        }
+
+        this.collectionCounts = collectionCounts;
+        this.oldGenUsed = (oldGenPool == null) ? -1 : oldGenPool.getUsage().getUsed();
+        this.metaspaceUsed = (metaspacePool == null) ? -1 : metaspacePool.getUsage().getUsed();
+        this.directMemoryUsed = (directPool == null) ? -1 : directPool.getMemoryUsed();
+
+        if (threadBean != null) {
+            sampleAllocationRate();
+        }
+
+        // The pauses that left a window are only dropped from its max here
+        synchronized (pauseTimes) {
+            final long now = System.currentTimeMillis();
+
+            for (final PauseWindow pauseWindow : pauseWindows.values()) {
+                pauseWindow.max = getMaxPause(now - pauseWindow.window / 1_000_000);
+            }
+        }
+    }
+
+    /**
+     * Sum the bytes allocated by every thread since the previous sample, threads that died in between are missed
+     */
+    private void sampleAllocationRate() {
+        final long now = System.nanoTime();
+        final long[] ids = threadBean.getAllThreadIds();
+        final long[] bytes = threadBean.getThreadAllocatedBytes(ids);
+        final Map<Long, Long> allocatedBytes = new HashMap<>(ids.length * 2);
+        long allocated = 0;
+
+        for (int index = 0; index < ids.length; index++) {
+            if (bytes[index] == -1) {
+                continue;
+            }
+
+            final Long previous = this.allocatedBytes.get(ids[index]);
+            allocated += (previous == null) ? 0 : Math.max(bytes[index] - previous, 0);
+            allocatedBytes.put(ids[index], bytes[index]);
+        }
+
+        if (lastSample != -1) {
+            allocationRate = allocated / ((now - lastSample) / 1_000_000_000.0);
+        }
+
+        this.allocatedBytes = allocatedBytes;
+        this.lastSample = now;
+    }
+
+    /**
+     * Get the index of a collector for {@link #getCollectionCount(int)}
+     *
+     * @param key collector key (e.g. {@code g1_young_generation})
+     * @return index, or {@code -1} if there is no such collector
+     */
+    public int getCollectorIndex(@NotNull final String key) {
+        return collectorIndexes.getOrDefault(key.toLowerCase(Locale.ROOT), -1);
+    }
+
+    /**
+     * @param collector index from {@link #getCollectorIndex(String)}
+     * @return number of collections at the last sample
+     */
+    public long getCollectionCount(final int collector) {
+        return collectionCounts[collector];
+    }
+
+    /**
+     * @return duration of the last garbage collection pause in milliseconds, {@code -1} if none happened yet
+     */
+    public long getLastPause() {
+        return lastPause;
+    }
+
+    /**
+     * Get a window whose longest garbage collection pause is kept up to date, from the pauses as they are recorded and
+     * from {@link #run()} as they leave the window
+     *
+     * @param window window in nanoseconds
+     * @return window, shared by every caller with the same length
+     */
+    public @NotNull PauseWindow getPauseWindow(final long window) {
+        synchronized (pauseTimes) {
+            return pauseWindows.computeIfAbsent(window, __ -> {
+                final PauseWindow pauseWindow = new PauseWindow(window);
+                pauseWindow.max = getMaxPause(System.currentTimeMillis() - window / 1_000_000);
+                return pauseWindow;
+            });
+        }
+    }
+
+    /**
+     * Walk the recorded pauses from the most recent, must hold the lock on {@code pauseTimes}
+     *
+     * @param since time in milliseconds since the epoch
+     * @return longest pause since the given time, {@code 0} if none happened
+     */
+    private long getMaxPause(final long since) {
+        long max = 0;
+
+        for (int written = pausesWritten, count = 0; written > 0 && count < PAUSES; written--, count++) {
+            final int index = (written - 1) % PAUSES;
+
+            if (pauseTimes[index] < since) {
+                break;
+            }
+
+            max = Math.max(max, pauseDurations[index]);
+        }
+
+        return max;
+    }
+
+    /**
+     * @return bytes used by the old generation, {@code -1} if the collector has none
+     */
+    public long getOldGenUsed() {
+        return oldGenUsed;
+    }
+
+    /**
+     * @return bytes used by the metaspace, {@code -1} if not available
+     */
+    public long getMetaspaceUsed() {
+        return metaspaceUsed;
+    }
+
+    /**
+     * @return bytes used by direct buffers, {@code -1} if not available
+     */
+    public long getDirectMemoryUsed() {
+        return directMemoryUsed;
+    }
+
+    /**
+     * @return bytes allocated per second between the last two samples, {@code -1} if not available
+     */
+    public double getAllocationRate() {
+        return allocationRate;
+    }
+
+    /**
+     * Longest garbage collection pause in a window, kept in a primitive field so reading it is a single field load
+     */
+    public static final class PauseWindow {
+
+        private final long window;
+        private volatile long max;
+
+        private PauseWindow(final long window) {
+            this.window = window;
+        }
+
+        /**
+         * @return duration in milliseconds, {@code 0} if none happened in the window
+         */
+        public long getMax() {
+            return max;
+        }
+
+    }
+
+}
@@ -0,0 +1,338 @@
+package at.helpch.placeholderapi.expansion.server.sampler;
+
+import at.helpch.placeholderapi.expansion.server.util.Capabilities;
+import com.destroystokyo.paper.event.server.ServerTickEndEvent;
+import com.destroystokyo.paper.event.server.ServerTickStartEvent;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the start and duration of the last ticks in a ring buffer, so tps and mspt can be calculated for any window
+ * without allocating.
+ * <br/>
+ * On Paper the ticks are measured with {@link ServerTickStartEvent} and {@link ServerTickEndEvent}, on other servers
+ * {@link #run()} has to be scheduled every tick and the duration of a tick is the time since the previous one. That
+ * interval is about 50 ms even on an idle server, so it is only good for the tps, see {@link #measuresDurations()}.
+ * Ticks are only recorded from one thread, they can be read from any thread.
+ */
+public final class TickSampler implements Runnable {
+
+    /**
+     * Ticks used for {@link #getMspt()}, the same as Paper's average tick time
+     */
+    private static final int MSPT_TICKS = 100;
+
+    /**
+     * Durations are stored in microseconds in log buckets with {@code 2^SUB_BUCKET_BITS} sub-buckets per power of two
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (32 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final int capacity;
+    private final long[] starts;
+    private final int[] durations;
+    private final long[] cumulativeDurations;
+    private final int[] histogram = new int[BUCKETS];
+
+    /**
+     * Number of ticks recorded, the latest tick is at index {@code (written - 1) % capacity}
+     */
+    private volatile long written;
+    private long tickStart = -1;
+    private long cumulativeDuration;
+    private volatile boolean measuresDurations;
+
+    /**
+     * @param capacity how many ticks are kept
+     */
+    public TickSampler(final int capacity) {
+        this.capacity = capacity;
+        this.starts = new long[capacity];
+        this.durations = new int[capacity];
+        this.cumulativeDurations = new long[capacity];
+    }
+
+    /**
+     * Get the listener that measures ticks, only available on Paper
+     *
+     * @param capabilities capabilities of the server
+     * @return listener, or {@code null} if the server doesn't have the tick events
+     */
+    public @Nullable Listener createPaperListener(@NotNull final Capabilities capabilities) {
+        if (!capabilities.hasTickEvents()) {
+            return null;
+        }
+
+        measuresDurations = true;
+        return new PaperListener();
+    }
+
+    /**
+     * Whether the ticks are measured with the tick events, otherwise the mspt is the interval between two ticks and
+     * not the time spent ticking
+     *
+     * @return true if the mspt is the time spent ticking
+     */
+    public boolean measuresDurations() {
+        return measuresDurations;
+    }
+
+    /**
+     * Record a tick from a task scheduled every tick, the duration is the time since the previous run
+     */
+    @Override
+    public void run() {
+        final long now = System.nanoTime();
+
+        if (tickStart != -1) {
+            record(tickStart, now - tickStart);
+        }
+
+        tickStart = now;
+    }
+
+    private void record(final long start, final long durationNanos) {
+        final long written = this.written;
+        final int index = (int) (written % capacity);
+        final int duration = (int) Math.min(TimeUnit.NANOSECONDS.toMicros(durationNanos), Integer.MAX_VALUE);
+
+        if (written >= capacity) {
+            histogram[bucket(durations[index])]--;
+        }
+
+        cumulativeDuration += duration;
+        starts[index] = start;
+        durations[index] = duration;
+        cumulativeDurations[index] = cumulativeDuration;
+        histogram[bucket(duration)]++;
+
+        this.written = written + 1;
+    }
+
+    private static int bucket(final int micros) {
+        if (micros < SUB_BUCKETS) {
+            return micros;
+        }
+
+        final int exponent = 31 - Integer.numberOfLeadingZeros(micros);
+        final int subBucket = (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Get the highest duration that falls in a bucket
+     *
+     * @param bucket bucket
+     * @return duration in microseconds
+     */
+    private static long bucketUpperBound(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        final int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final long subBucket = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * Parse a window like {@code 30s} or {@code 5m}
+     *
+     * @param window window
+     * @return window in nanoseconds, or {@code -1} if it is invalid
+     */
+    public static long parseWindow(@NotNull final String window) {
+        if (window.length() < 2) {
+            return -1;
+        }
+
+        final TimeUnit unit;
+
+        switch (window.charAt(window.length() - 1)) {
+            case 's':
+                unit = TimeUnit.SECONDS;
+                break;
+            case 'm':
+                unit = TimeUnit.MINUTES;
+                break;
+            default:
+                return -1;
+        }
+
+        long value = 0;
+
+        for (int index = 0; index < window.length() - 1; index++) {
+            final char digit = window.charAt(index);
+
+            if (digit < '0' || digit > '9' || value > Integer.MAX_VALUE) {
+                return -1;
+            }
+
+            value = value * 10 + (digit - '0');
+        }
+
+        return (value == 0) ? -1 : unit.toNanos(value);
+    }
+
+    /**
+     * Get the number of ticks that can be read, the oldest ones may be overwritten by the main thread while they are
+     * being read so a second of margin is kept
+     *
+     * @param written ticks written
+     * @return readable ticks
+     */
+    private int readable(final long written) {
+        return (int) Math.min(written, capacity - 20);
+    }
+
+    /**
+     * Get the ring index of the oldest tick that started within a window
+     *
+     * @param written ticks written
+     * @param since   start of the window, as {@link System#nanoTime()}
+     * @return number of ticks back from the latest one, {@code 0} if no tick started within the window
+     */
+    private int ticksSince(final long written, final long since) {
+        // Ticks are recorded in order, binary search the oldest one that started after 'since'
+        int low = 1;
+        int high = readable(written);
+        int found = 0;
+
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+
+            if (starts[(int) ((written - middle) % capacity)] - since >= 0) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Get the tps over a window
+     *
+     * @param window window in nanoseconds
+     * @return tps, or {@code 20} if no tick has been recorded yet
+     */
+    public double getTps(final long window) {
+        final long written = this.written;
+
+        if (written == 0) {
+            return 20;
+        }
+
+        final long now = System.nanoTime();
+        final int ticks = ticksSince(written, now - window);
+
+        // Shorter window if the sampler has not been running for long enough
+        final long oldest = starts[(int) ((written - readable(written)) % capacity)];
+        final long elapsed = Math.min(window, now - oldest);
+        return (elapsed <= 0) ? 20 : ticks * 1e9 / elapsed;
+    }
+
+    /**
+     * Get the average duration of the last {@value #MSPT_TICKS} ticks
+     *
+     * @return milliseconds per tick
+     */
+    public double getMspt() {
+        final long written = this.written;
+        return getAverageMspt(written, (int) Math.min(MSPT_TICKS, readable(written)));
+    }
+
+    /**
+     * Get the average duration of the ticks that started within a window
+     *
+     * @param window window in nanoseconds
+     * @return milliseconds per tick
+     */
+    public double getAverageMspt(final long window) {
+        final long written = this.written;
+        return getAverageMspt(written, ticksSince(written, System.nanoTime() - window));
+    }
+
+    private double getAverageMspt(final long written, final int ticks) {
+        if (ticks == 0) {
+            return 0;
+        }
+
+        final long latest = cumulativeDurations[(int) ((written - 1) % capacity)];
+        final long beforeOldest = (written > ticks) ? cumulativeDurations[(int) ((written - ticks - 1) % capacity)] : 0;
+        return (latest - beforeOldest) / 1000.0 / ticks;
+    }
+
+    /**
+     * Get the longest tick that started within a window
+     *
+     * @param window window in nanoseconds
+     * @return milliseconds
+     */
+    public double getMaxMspt(final long window) {
+        final long written = this.written;
+        final int ticks = ticksSince(written, System.nanoTime() - window);
+        int max = 0;
+
+        for (int tick = 1; tick <= ticks; tick++) {
+            max = Math.max(max, durations[(int) ((written - tick) % capacity)]);
+        }
+
+        return max / 1000.0;
+    }
+
+    /**
+     * Get a percentile of the duration of all the recorded ticks, precise to {@code 1/8} of a power of two
+     *
+     * @param percentile percentile, between {@code 0} and {@code 1}
+     * @return milliseconds
+     */
+    public double getPercentileMspt(final double percentile) {
+        final long total = Math.min(written, capacity);
+
+        if (total == 0) {
+            return 0;
+        }
+
+        final long target = Math.max((long) Math.ceil(total * percentile), 1);
+        long count = 0;
+
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            count += histogram[bucket];
+
+            if (count >= target) {
+                return bucketUpperBound(bucket) / 1000.0;
+            }
+        }
+
+        return bucketUpperBound(BUCKETS - 1) / 1000.0;
+    }
+
+    /**
+     * Kept separate from {@link TickSampler} so the Paper events are only loaded if they exist
+     */
+    private final class PaperListener implements Listener {
+
+        @EventHandler(priority = EventPriority.LOWEST)
+        public void onTickStart(@NotNull final ServerTickStartEvent event) {
+            tickStart = System.nanoTime();
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onTickEnd(@NotNull final ServerTickEndEvent event) {
+            if (tickStart != -1) {
+                record(tickStart, System.nanoTime() - tickStart);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,210 @@
+package at.helpch.placeholderapi.expansion.server.snapshot;
+
+import at.helpch.placeholderapi.expansion.server.tracker.ChunkTracker;
+import at.helpch.placeholderapi.expansion.server.util.Scheduling;
+import com.google.common.collect.ImmutableMap;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Collects the world metrics on Folia, where chunks and entities can only be read from the thread of the region that
+ * owns them.
+ * <br/>
+ * A task is scheduled on the owning region of every {@link ChunkTracker#SECTION_SHIFT section} with loaded chunks,
+ * each one counts the chunks, entities and players of its section and the counts are merged into one
+ * {@link WorldSnapshot} per world once every task has finished.
+ */
+public final class RegionCollector {
+
+    private static final EntityType[] TYPES = EntityType.values();
+
+    /**
+     * How long to wait for the tasks of a collection before starting a new one, a region could for example have been
+     * unloaded before running its task
+     */
+    private static final long TIMEOUT = TimeUnit.SECONDS.toNanos(5);
+
+    private final Plugin plugin;
+    private final ChunkTracker chunkTracker;
+
+    private volatile Collection current;
+
+    /**
+     * @param plugin       plugin used to schedule the region tasks
+     * @param chunkTracker tracker of the sections with loaded chunks
+     */
+    public RegionCollector(@NotNull final Plugin plugin, @NotNull final ChunkTracker chunkTracker) {
+        this.plugin = plugin;
+        this.chunkTracker = chunkTracker;
+    }
+
+    /**
+     * Start collecting the metrics of all worlds, does nothing if the previous collection is still running
+     *
+     * @param callback called with the worlds (the key is the lower case world name) once every region has been counted,
+     *                 from the thread of the last region
+     */
+    public void collect(@NotNull final Consumer<Map<String, WorldSnapshot>> callback) {
+        final Collection previous = current;
+
+        if (previous != null && previous.pending.get() > 0 && System.nanoTime() - previous.startedAt < TIMEOUT) {
+            return;
+        }
+
+        final List<World> worlds = Bukkit.getWorlds();
+        final Collection collection = new Collection(worlds.size(), callback);
+        current = collection;
+
+        for (int index = 0; index < worlds.size(); index++) {
+            final World world = worlds.get(index);
+            final WorldCounts counts = new WorldCounts(world.getName());
+            collection.worlds[index] = counts;
+
+            for (final long section : chunkTracker.getSections(world.getName())) {
+                final int chunkX = ChunkTracker.sectionX(section) << ChunkTracker.SECTION_SHIFT;
+                final int chunkZ = ChunkTracker.sectionZ(section) << ChunkTracker.SECTION_SHIFT;
+
+                collection.pending.incrementAndGet();
+                Scheduling.runAtChunk(plugin, world, chunkX, chunkZ, () -> {
+                    count(world, chunkX, chunkZ, counts);
+                    collection.complete();
+                });
+            }
+        }
+
+        // Release the count held while the tasks were being scheduled
+        collection.complete();
+    }
+
+    /**
+     * Count the loaded chunks, entities and players of a section, must be called from the thread that owns it
+     *
+     * @param world  world
+     * @param chunkX first chunk x of the section
+     * @param chunkZ first chunk z of the section
+     * @param counts counts of the world
+     */
+    private void count(@NotNull final World world, final int chunkX, final int chunkZ, @NotNull final WorldCounts counts) {
+        final int size = 1 << ChunkTracker.SECTION_SHIFT;
+        final int[] entitiesByType = new int[TYPES.length];
+        int players = 0;
+        int loadedChunks = 0;
+        int forceLoadedChunks = 0;
+        int entities = 0;
+        int livingEntities = 0;
+
+        for (int x = chunkX; x < chunkX + size; x++) {
+            for (int z = chunkZ; z < chunkZ + size; z++) {
+                if (!world.isChunkLoaded(x, z)) {
+                    continue;
+                }
+
+                final Chunk chunk = world.getChunkAt(x, z);
+                loadedChunks++;
+
+                if (chunk.isForceLoaded()) {
+                    forceLoadedChunks++;
+                }
+
+                for (final Entity entity : chunk.getEntities()) {
+                    entitiesByType[entity.getType().ordinal()]++;
+                    entities++;
+
+                    if (entity instanceof LivingEntity) {
+                        livingEntities++;
+                    }
+
+                    if (entity instanceof Player) {
+                        players++;
+                    }
+                }
+            }
+        }
+
+        // Keeps the tracker right if it missed the events of chunks that were loaded before it was registered
+        chunkTracker.setSectionChunks(world, ChunkTracker.sectionKey(chunkX, chunkZ), loadedChunks);
+        counts.add(players, loadedChunks, forceLoadedChunks, entities, livingEntities, entitiesByType);
+    }
+
+    private final class Collection {
+
+        private final long startedAt = System.nanoTime();
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private final WorldCounts[] worlds;
+        private final Consumer<Map<String, WorldSnapshot>> callback;
+
+        private Collection(final int worlds, @NotNull final Consumer<Map<String, WorldSnapshot>> callback) {
+            this.worlds = new WorldCounts[worlds];
+            this.callback = callback;
+        }
+
+        private void complete() {
+            // Results of a collection that timed out are dropped
+            if (pending.decrementAndGet() != 0 || current != this) {
+                return;
+            }
+
+            final ImmutableMap.Builder<String, WorldSnapshot> snapshots = ImmutableMap.builder();
+
+            for (final WorldCounts counts : worlds) {
+                snapshots.put(counts.name.toLowerCase(Locale.ROOT), counts.toSnapshot());
+            }
+
+            callback.accept(snapshots.build());
+        }
+
+    }
+
+    /**
+     * Counts of a world, merged from the tasks of its sections
+     */
+    private static final class WorldCounts {
+
+        private final String name;
+        private final int[] entitiesByType = new int[TYPES.length];
+        private int players;
+        private long loadedChunks;
+        private int forceLoadedChunks;
+        private int entities;
+        private int livingEntities;
+
+        private WorldCounts(@NotNull final String name) {
+            this.name = name;
+        }
+
+        private synchronized void add(
+            final int players, final int loadedChunks, final int forceLoadedChunks,
+            final int entities, final int livingEntities, @NotNull final int[] entitiesByType
+        ) {
+            this.players += players;
+            this.loadedChunks += loadedChunks;
+            this.forceLoadedChunks += forceLoadedChunks;
+            this.entities += entities;
+            this.livingEntities += livingEntities;
+
+            for (int index = 0; index < entitiesByType.length; index++) {
+                this.entitiesByType[index] += entitiesByType[index];
+            }
+        }
+
+        private synchronized @NotNull WorldSnapshot toSnapshot() {
+            return new WorldSnapshot(name, players, loadedChunks, forceLoadedChunks, entities, livingEntities, entitiesByType.clone());
+        }
+
+    }
+
+}
@@ -0,0 +1,136 @@
+package at.helpch.placeholderapi.expansion.server.snapshot;
+
+import com.google.common.collect.ImmutableMap;
+import org.bukkit.entity.EntityType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable view of the server's world, player, entity and chunk metrics, taken on the main thread by
+ * {@link SnapshotSampler} so placeholders can be resolved from any thread.
+ */
+public final class ServerSnapshot {
+
+    /**
+     * Snapshot used until the first one is taken
+     */
+    public static final ServerSnapshot EMPTY = new ServerSnapshot(
+        0, 0, 0, false, new double[]{0, 0, 0},
+        0, 0, 0, 0, new int[EntityType.values().length],
+        ImmutableMap.of()
+    );
+
+    private final long takenAt;
+    private final int online;
+    private final int maxPlayers;
+    private final boolean whitelist;
+    private final double[] tps;
+    private final long loadedChunks;
+    private final int forceLoadedChunks;
+    private final int entities;
+    private final int livingEntities;
+    private final int[] entitiesByType;
+    private final Map<String, WorldSnapshot> worlds;
+
+    /**
+     * @param takenAt           when the snapshot was taken, in milliseconds since the epoch
+     * @param online            online players
+     * @param maxPlayers        max players
+     * @param whitelist         whether the server has a whitelist
+     * @param tps               tps for the last 1, 5 and 15 minutes, must not be modified afterwards
+     * @param loadedChunks      loaded chunks in all worlds
+     * @param forceLoadedChunks force loaded chunks in all worlds
+     * @param entities          entities in all worlds
+     * @param livingEntities    living entities in all worlds
+     * @param entitiesByType    entities in all worlds indexed by {@link EntityType#ordinal()}, must not be modified afterwards
+     * @param worlds            worlds, the key is the lower case world name
+     */
+    public ServerSnapshot(
+        final long takenAt, final int online, final int maxPlayers, final boolean whitelist, @NotNull final double[] tps,
+        final long loadedChunks, final int forceLoadedChunks, final int entities, final int livingEntities,
+        @NotNull final int[] entitiesByType, @NotNull final Map<String, WorldSnapshot> worlds
+    ) {
+        this.takenAt = takenAt;
+        this.online = online;
+        this.maxPlayers = maxPlayers;
+        this.whitelist = whitelist;
+        this.tps = tps;
+        this.loadedChunks = loadedChunks;
+        this.forceLoadedChunks = forceLoadedChunks;
+        this.entities = entities;
+        this.livingEntities = livingEntities;
+        this.entitiesByType = entitiesByType;
+        this.worlds = worlds;
+    }
+
+    public long takenAt() {
+        return takenAt;
+    }
+
+    public int online() {
+        return online;
+    }
+
+    public int maxPlayers() {
+        return maxPlayers;
+    }
+
+    public boolean whitelist() {
+        return whitelist;
+    }
+
+    /**
+     * Get the tps of a window
+     *
+     * @param window {@code 0}, {@code 1} or {@code 2} for the last 1, 5 or 15 minutes
+     * @return tps
+     */
+    public double tps(final int window) {
+        return tps[window];
+    }
+
+    /**
+     * @return tps for the last 1, 5 and 15 minutes, must not be modified
+     */
+    @NotNull double[] tps() {
+        return tps;
+    }
+
+    public long loadedChunks() {
+        return loadedChunks;
+    }
+
+    public int forceLoadedChunks() {
+        return forceLoadedChunks;
+    }
+
+    public int entities() {
+        return entities;
+    }
+
+    public int livingEntities() {
+        return livingEntities;
+    }
+
+    public int entities(@NotNull final EntityType type) {
+        return entitiesByType[type.ordinal()];
+    }
+
+    /**
+     * Get a world
+     *
+     * @param name world name (case-insensitive)
+     * @return world, or {@code null} if it didn't exist when the snapshot was taken
+     */
+    public @Nullable WorldSnapshot world(@NotNull final String name) {
+        return worlds.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    public @NotNull Map<String, WorldSnapshot> worlds() {
+        return worlds;
+    }
+
+}
@@ -0,0 +1,275 @@
+package at.helpch.placeholderapi.expansion.server.snapshot;
+
+import at.helpch.placeholderapi.expansion.server.tracker.ChunkTracker;
+import at.helpch.placeholderapi.expansion.server.tracker.EntityTracker;
+import at.helpch.placeholderapi.expansion.server.tracker.PlayerTracker;
+import at.helpch.placeholderapi.expansion.server.util.Capabilities;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.math.LongMath;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.EntityType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Collects the server metrics into a {@link ServerSnapshot}, must be run every {@link #getPeriod()} ticks from the main
+ * thread (or the global region thread on Folia).
+ * <br/>
+ * Every {@link Section} is refreshed on its own schedule, the sections that are not due are copied from the previous
+ * snapshot. Placeholders keep reading the previous snapshot while a new one is collected, so a refresh never happens
+ * on the thread requesting a placeholder.
+ */
+public final class SnapshotSampler implements Runnable {
+
+    private static final EntityType[] TYPES = EntityType.values();
+
+    /**
+     * Parts of the snapshot that are refreshed on their own schedule
+     */
+    public enum Section {
+
+        /**
+         * Online and max players, whitelist and players per world
+         */
+        ONLINE("online", "1s"),
+        TPS("tps", "1s"),
+        /**
+         * Loaded chunks, on Folia the players per world and the force loaded chunks are counted with them
+         */
+        CHUNKS("chunks", "1s"),
+        /**
+         * Force loaded chunks, listing them copies the coordinates of every force loaded chunk
+         */
+        FORCE_LOADED_CHUNKS("force_loaded_chunks", "5s"),
+        ENTITIES("entities", "1s");
+
+        private static final Section[] SECTIONS = values();
+
+        private final String key;
+        private final String defaultTtl;
+
+        Section(@NotNull final String key, @NotNull final String defaultTtl) {
+            this.key = key;
+            this.defaultTtl = defaultTtl;
+        }
+
+        /**
+         * @return config key of the section
+         */
+        public @NotNull String getKey() {
+            return key;
+        }
+
+        /**
+         * @return ttl used when the config doesn't set one, e.g. {@code 1s}
+         */
+        public @NotNull String getDefaultTtl() {
+            return defaultTtl;
+        }
+
+        private int mask() {
+            return 1 << ordinal();
+        }
+
+    }
+
+    private final ChunkTracker chunkTracker;
+    private final EntityTracker entityTracker;
+    private final PlayerTracker playerTracker;
+    private final RegionCollector regionCollector;
+    private final Capabilities capabilities;
+    private final long[] ttls = new long[Section.SECTIONS.length];
+    private final long[] refreshAt = new long[Section.SECTIONS.length];
+    private final long period;
+
+    private long tick;
+    private volatile ServerSnapshot snapshot = ServerSnapshot.EMPTY;
+
+    /**
+     * Create a sampler that reads the worlds from the trackers
+     *
+     * @param chunkTracker  chunk tracker
+     * @param entityTracker entity tracker
+     * @param playerTracker player tracker
+     * @param capabilities  capabilities of the server, to read the tps
+     * @param ttls          ticks between two refreshes of each section, {@code 1} to refresh it every tick
+     */
+    public SnapshotSampler(
+        @NotNull final ChunkTracker chunkTracker, @NotNull final EntityTracker entityTracker,
+        @NotNull final PlayerTracker playerTracker, @NotNull final Capabilities capabilities,
+        @NotNull final Map<Section, Long> ttls
+    ) {
+        this(chunkTracker, entityTracker, playerTracker, null, capabilities, ttls);
+    }
+
+    /**
+     * Create a sampler that collects the worlds from every region, for Folia
+     *
+     * @param regionCollector region collector
+     * @param capabilities    capabilities of the server, to read the tps
+     * @param ttls            ticks between two refreshes of each section, {@code 1} to refresh it every tick
+     */
+    public SnapshotSampler(
+        @NotNull final RegionCollector regionCollector, @NotNull final Capabilities capabilities,
+        @NotNull final Map<Section, Long> ttls
+    ) {
+        this(null, null, null, regionCollector, capabilities, ttls);
+    }
+
+    private SnapshotSampler(
+        @Nullable final ChunkTracker chunkTracker, @Nullable final EntityTracker entityTracker,
+        @Nullable final PlayerTracker playerTracker, @Nullable final RegionCollector regionCollector,
+        @NotNull final Capabilities capabilities, @NotNull final Map<Section, Long> ttls
+    ) {
+        this.chunkTracker = chunkTracker;
+        this.entityTracker = entityTracker;
+        this.playerTracker = playerTracker;
+        this.regionCollector = regionCollector;
+        this.capabilities = capabilities;
+
+        long period = 0;
+
+        for (final Section section : Section.SECTIONS) {
+            final long ttl = Math.max(ttls.getOrDefault(section, 1L), 1);
+            this.ttls[section.ordinal()] = ttl;
+            period = (period == 0) ? ttl : LongMath.gcd(period, ttl);
+        }
+
+        this.period = period;
+    }
+
+    /**
+     * Get the ticks between two runs, the greatest common divisor of the ttls so that every section is refreshed on time
+     * without running on ticks where nothing is due
+     *
+     * @return period in ticks
+     */
+    public long getPeriod() {
+        return period;
+    }
+
+    /**
+     * Get the latest snapshot, can be called from any thread
+     *
+     * @return snapshot
+     */
+    public @NotNull ServerSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public void run() {
+        final long tick = this.tick;
+        this.tick += period;
+        int due = 0;
+
+        for (final Section section : Section.SECTIONS) {
+            if (tick >= refreshAt[section.ordinal()]) {
+                refreshAt[section.ordinal()] = tick + ttls[section.ordinal()];
+                due |= section.mask();
+            }
+        }
+
+        if (due == 0) {
+            return;
+        }
+
+        if (regionCollector == null) {
+            if ((due & Section.FORCE_LOADED_CHUNKS.mask()) != 0) {
+                // There is no event for chunks being (un)marked as force loaded
+                chunkTracker.refreshForceLoaded();
+            }
+
+            final int worldSections = Section.ONLINE.mask() | Section.CHUNKS.mask() | Section.FORCE_LOADED_CHUNKS.mask()
+                | Section.ENTITIES.mask();
+            publish((due & worldSections) != 0 ? sampleWorlds(due) : null, due);
+            return;
+        }
+
+        if ((due & (Section.CHUNKS.mask() | Section.FORCE_LOADED_CHUNKS.mask() | Section.ENTITIES.mask())) != 0) {
+            regionCollector.collect(worlds -> publish(worlds, 0));
+        }
+
+        if ((due & (Section.ONLINE.mask() | Section.TPS.mask())) != 0) {
+            publish(null, due);
+        }
+    }
+
+    /**
+     * Read the worlds from the trackers, the sections that are not due are copied from the previous snapshot
+     *
+     * @param due mask of the sections to refresh
+     * @return worlds, the key is the lower case world name
+     */
+    private @NotNull Map<String, WorldSnapshot> sampleWorlds(final int due) {
+        final ServerSnapshot previous = snapshot;
+        final ImmutableMap.Builder<String, WorldSnapshot> worlds = ImmutableMap.builder();
+
+        for (final World world : Bukkit.getWorlds()) {
+            final String name = world.getName();
+            final String key = name.toLowerCase(Locale.ROOT);
+            final WorldSnapshot last = previous.worlds().get(key);
+            final boolean players = last == null || (due & Section.ONLINE.mask()) != 0;
+            final boolean chunks = last == null || (due & Section.CHUNKS.mask()) != 0;
+            final boolean forceLoadedChunks = last == null || (due & Section.FORCE_LOADED_CHUNKS.mask()) != 0;
+            final boolean entities = last == null || (due & Section.ENTITIES.mask()) != 0;
+            final int[] entitiesByType = entities ? entityTracker.copyEntities(name) : null;
+
+            worlds.put(key, new WorldSnapshot(
+                name,
+                players ? Math.max(playerTracker.getOnline(name), 0) : last.players(),
+                chunks ? Math.max(chunkTracker.getLoadedChunks(name), 0) : last.loadedChunks(),
+                forceLoadedChunks ? Math.max(chunkTracker.getForceLoadedChunks(name), 0) : last.forceLoadedChunks(),
+                entities ? Math.max(entityTracker.getEntities(name), 0) : last.entities(),
+                entities ? Math.max(entityTracker.getLivingEntities(name), 0) : last.livingEntities(),
+                entities ? ((entitiesByType == null) ? new int[TYPES.length] : entitiesByType) : last.entitiesByType()
+            ));
+        }
+
+        return worlds.build();
+    }
+
+    /**
+     * Sum the worlds and publish them as the new snapshot, synchronized because on Folia the worlds are published from
+     * the thread of the last region
+     *
+     * @param worlds worlds, the key is the lower case world name, or {@code null} to keep the previous ones
+     * @param due    mask of the other sections to refresh
+     */
+    private synchronized void publish(@Nullable final Map<String, WorldSnapshot> worlds, final int due) {
+        final ServerSnapshot previous = snapshot;
+        final Map<String, WorldSnapshot> published = (worlds == null) ? previous.worlds() : worlds;
+        final boolean online = (due & Section.ONLINE.mask()) != 0;
+        final int[] entitiesByType = new int[TYPES.length];
+        long loadedChunks = 0;
+        int forceLoadedChunks = 0;
+        int entities = 0;
+        int livingEntities = 0;
+
+        for (final WorldSnapshot world : published.values()) {
+            loadedChunks += world.loadedChunks();
+            forceLoadedChunks += world.forceLoadedChunks();
+            entities += world.entities();
+            livingEntities += world.livingEntities();
+
+            for (final EntityType type : TYPES) {
+                entitiesByType[type.ordinal()] += world.entities(type);
+            }
+        }
+
+        snapshot = new ServerSnapshot(
+            System.currentTimeMillis(),
+            online ? Bukkit.getOnlinePlayers().size() : previous.online(),
+            online ? Bukkit.getMaxPlayers() : previous.maxPlayers(),
+            online ? Bukkit.hasWhitelist() : previous.whitelist(),
+            (due & Section.TPS.mask()) != 0 ? capabilities.getTps().clone() : previous.tps(),
+            loadedChunks, forceLoadedChunks, entities, livingEntities, entitiesByType,
+            published
+        );
+    }
+
+}
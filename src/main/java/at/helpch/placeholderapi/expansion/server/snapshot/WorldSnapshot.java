@@ -0,0 +1,77 @@
+package at.helpch.placeholderapi.expansion.server.snapshot;
+
+import org.bukkit.entity.EntityType;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Metrics of a single world at the time a {@link ServerSnapshot} was taken
+ */
+public final class WorldSnapshot {
+
+    private final String name;
+    private final int players;
+    private final long loadedChunks;
+    private final int forceLoadedChunks;
+    private final int entities;
+    private final int livingEntities;
+    private final int[] entitiesByType;
+
+    /**
+     * @param name              world name
+     * @param players           online players in the world
+     * @param loadedChunks      loaded chunks
+     * @param forceLoadedChunks force loaded chunks
+     * @param entities          entities
+     * @param livingEntities    living entities
+     * @param entitiesByType    entities indexed by {@link EntityType#ordinal()}, must not be modified afterwards
+     */
+    public WorldSnapshot(
+        @NotNull final String name, final int players,
+        final long loadedChunks, final int forceLoadedChunks,
+        final int entities, final int livingEntities, @NotNull final int[] entitiesByType
+    ) {
+        this.name = name;
+        this.players = players;
+        this.loadedChunks = loadedChunks;
+        this.forceLoadedChunks = forceLoadedChunks;
+        this.entities = entities;
+        this.livingEntities = livingEntities;
+        this.entitiesByType = entitiesByType;
+    }
+
+    public @NotNull String name() {
+        return name;
+    }
+
+    public int players() {
+        return players;
+    }
+
+    public long loadedChunks() {
+        return loadedChunks;
+    }
+
+    public int forceLoadedChunks() {
+        return forceLoadedChunks;
+    }
+
+    public int entities() {
+        return entities;
+    }
+
+    public int livingEntities() {
+        return livingEntities;
+    }
+
+    public int entities(@NotNull final EntityType type) {
+        return entitiesByType[type.ordinal()];
+    }
+
+    /**
+     * @return entities indexed by {@link EntityType#ordinal()}, must not be modified
+     */
+    @NotNull int[] entitiesByType() {
+        return entitiesByType;
+    }
+
+}
@@ -0,0 +1,372 @@
+package at.helpch.placeholderapi.expansion.server.tracker;
+
+import at.helpch.placeholderapi.expansion.server.util.Logging;
+import at.helpch.placeholderapi.expansion.server.util.Scheduling;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps count of the loaded chunks of every world from {@link ChunkLoadEvent} and {@link ChunkUnloadEvent}, so the
+ * chunk placeholders don't have to copy {@link World#getLoadedChunks()}.
+ * <br/>
+ * It can also keep track of which {@link #SECTION_SHIFT sections} have loaded chunks, so the chunks can be walked
+ * without copying them all at once, and on Folia so that the thread of each region can be asked for the data of its own
+ * chunks. Chunks are then counted per section. On Folia, the chunks loaded before the tracker are counted by region
+ * tasks around the spawn, the players and the force loaded chunks, and {@code RegionCollector} replaces the count of
+ * every section it visits, including the sections the seed missed once one of their chunks unloads.
+ */
+public final class ChunkTracker implements Listener {
+
+    /**
+     * Chunks are grouped in sections of {@code 16x16} chunks, the same size as Folia's default region sections, so a
+     * section is always owned by a single region
+     */
+    public static final int SECTION_SHIFT = 4;
+
+    private final Map<String, WorldChunks> worlds = new ConcurrentHashMap<>();
+    private final Plugin plugin;
+    private final boolean regionized;
+    private final boolean trackSections;
+
+    /**
+     * @param plugin        plugin used to schedule the region tasks that count the sections
+     * @param regionized    whether the chunks are owned by region threads (Folia), where the loaded chunks can only be
+     *                      counted per section from the thread of their region
+     * @param trackSections whether to keep track of the sections with loaded chunks, always the case if regionized
+     */
+    public ChunkTracker(@NotNull final Plugin plugin, final boolean regionized, final boolean trackSections) {
+        this.plugin = plugin;
+        this.regionized = regionized;
+        this.trackSections = regionized || trackSections;
+    }
+
+    /**
+     * Count the chunks that are already loaded, must be called from the main thread (the global region thread on
+     * Folia)
+     */
+    public void seed() {
+        for (final World world : Bukkit.getWorlds()) {
+            seed(world);
+        }
+
+        if (!regionized) {
+            refreshForceLoaded();
+            return;
+        }
+
+        // Chunks are loaded around the players, the region of each player looks for the sections around it
+        for (final Player player : Bukkit.getOnlinePlayers()) {
+            Scheduling.runAtEntity(plugin, player, () -> {
+                final Location location = player.getLocation();
+                seedAround(location.getWorld(), location.getBlockX() >> 4, location.getBlockZ() >> 4);
+            });
+        }
+    }
+
+    /**
+     * Replace the count of a world with the number of chunks it currently has loaded, or with the sections around its
+     * spawn and of its force loaded chunks on Folia
+     *
+     * @param world world
+     */
+    private void seed(@NotNull final World world) {
+        final WorldChunks chunks = getOrCreate(world);
+
+        if (regionized) {
+            // Folia doesn't allow reading the chunks of all regions from a single thread
+            final Location spawn = world.getSpawnLocation();
+            seedAround(world, spawn.getBlockX() >> 4, spawn.getBlockZ() >> 4);
+            seedForceLoaded(world);
+            return;
+        }
+
+        final Chunk[] loadedChunks = world.getLoadedChunks();
+
+        if (trackSections) {
+            // The chunk events are called from this thread too, so the sections can't change while they are replaced
+            final Map<Long, Integer> sections = new HashMap<>();
+
+            for (final Chunk chunk : loadedChunks) {
+                sections.merge(sectionKey(chunk.getX(), chunk.getZ()), 1, Integer::sum);
+            }
+
+            chunks.sections.clear();
+            chunks.sections.putAll(sections);
+        }
+
+        chunks.loaded.add(loadedChunks.length - chunks.loaded.sum());
+    }
+
+    /**
+     * Count the sections within view distance of a chunk, each from the thread of the region that owns it
+     *
+     * @param world  world
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     */
+    private void seedAround(@NotNull final World world, final int chunkX, final int chunkZ) {
+        final WorldChunks chunks = getOrCreate(world);
+        final int radius = Bukkit.getViewDistance() + 1;
+
+        for (int sectionX = (chunkX - radius) >> SECTION_SHIFT; sectionX <= (chunkX + radius) >> SECTION_SHIFT; sectionX++) {
+            for (int sectionZ = (chunkZ - radius) >> SECTION_SHIFT; sectionZ <= (chunkZ + radius) >> SECTION_SHIFT; sectionZ++) {
+                seedSection(world, chunks, sectionX << SECTION_SHIFT, sectionZ << SECTION_SHIFT);
+            }
+        }
+    }
+
+    /**
+     * Count the sections of the force loaded chunks, which stay loaded away from the spawn and the players
+     *
+     * @param world world
+     */
+    private void seedForceLoaded(@NotNull final World world) {
+        final Collection<Chunk> forceLoaded;
+
+        try {
+            forceLoaded = world.getForceLoadedChunks();
+        } catch (RuntimeException exception) {
+            // Only the coordinates are needed, but a fork could still check the thread of the chunks
+            Logging.error(exception, "Could not list the force loaded chunks of \"{0}\"", world.getName());
+            return;
+        }
+
+        final WorldChunks chunks = getOrCreate(world);
+
+        for (final Chunk chunk : forceLoaded) {
+            seedSection(world, chunks, (chunk.getX() >> SECTION_SHIFT) << SECTION_SHIFT, (chunk.getZ() >> SECTION_SHIFT) << SECTION_SHIFT);
+        }
+    }
+
+    /**
+     * Count a section from the thread of the region that owns it, unless it was already seeded
+     *
+     * @param world  world
+     * @param chunks chunks of the world
+     * @param firstX first chunk x of the section
+     * @param firstZ first chunk z of the section
+     */
+    private void seedSection(@NotNull final World world, @NotNull final WorldChunks chunks, final int firstX, final int firstZ) {
+        if (chunks.seeded.add(sectionKey(firstX, firstZ))) {
+            Scheduling.runAtChunk(plugin, world, firstX, firstZ, () -> countSection(world, firstX, firstZ));
+        }
+    }
+
+    private void countSection(@NotNull final World world, final int firstX, final int firstZ) {
+        final int size = 1 << SECTION_SHIFT;
+        int loaded = 0;
+
+        for (int x = firstX; x < firstX + size; x++) {
+            for (int z = firstZ; z < firstZ + size; z++) {
+                if (world.isChunkLoaded(x, z)) {
+                    loaded++;
+                }
+            }
+        }
+
+        setSectionChunks(world, sectionKey(firstX, firstZ), loaded);
+    }
+
+    /**
+     * Replace the count of a section with the number of chunks it currently has loaded, only available if sections
+     * are tracked
+     * <br/>
+     * Must be called from the thread of the region that owns the section, which is also the thread calling the chunk
+     * events of the section, so the count can't change while it is replaced.
+     *
+     * @param world        world
+     * @param sectionKey   section key, see {@link #sectionKey(int, int)}
+     * @param loadedChunks loaded chunks of the section
+     */
+    public void setSectionChunks(@NotNull final World world, final long sectionKey, final int loadedChunks) {
+        final WorldChunks chunks = getOrCreate(world);
+        final Integer previous = (loadedChunks <= 0) ? chunks.sections.remove(sectionKey) : chunks.sections.put(sectionKey, loadedChunks);
+
+        chunks.loaded.add(loadedChunks - ((previous == null) ? 0 : previous));
+    }
+
+    /**
+     * Update the number of force loaded chunks, there is no event for chunks being (un)marked as force loaded so this
+     * is called by the {@code SnapshotSampler} when its force loaded chunks are due, from the main thread
+     */
+    public void refreshForceLoaded() {
+        for (final World world : Bukkit.getWorlds()) {
+            getOrCreate(world).forceLoaded = world.getForceLoadedChunks().size();
+        }
+    }
+
+    private @NotNull WorldChunks getOrCreate(@NotNull final World world) {
+        return worlds.computeIfAbsent(world.getName().toLowerCase(Locale.ROOT), __ -> new WorldChunks());
+    }
+
+    /**
+     * Get the sections of a world that have loaded chunks or are waiting to be counted, only available if sections are
+     * tracked
+     *
+     * @param worldName world name (case-insensitive)
+     * @return section keys, see {@link #sectionKey(int, int)}
+     */
+    public @NotNull long[] getSections(@NotNull final String worldName) {
+        final WorldChunks chunks = worlds.get(worldName.toLowerCase(Locale.ROOT));
+
+        if (chunks == null) {
+            return new long[0];
+        }
+
+        return chunks.sections.keySet().stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Get the key of the section that contains a chunk
+     *
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     * @return section key
+     */
+    public static long sectionKey(final int chunkX, final int chunkZ) {
+        return ((long) (chunkX >> SECTION_SHIFT) << 32) | ((chunkZ >> SECTION_SHIFT) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Get the section x of a section key
+     *
+     * @param sectionKey section key
+     * @return section x, multiply by {@code 1 << SECTION_SHIFT} to get the first chunk x
+     */
+    public static int sectionX(final long sectionKey) {
+        return (int) (sectionKey >> 32);
+    }
+
+    /**
+     * Get the section z of a section key
+     *
+     * @param sectionKey section key
+     * @return section z, multiply by {@code 1 << SECTION_SHIFT} to get the first chunk z
+     */
+    public static int sectionZ(final long sectionKey) {
+        return (int) sectionKey;
+    }
+
+    /**
+     * Get the number of loaded chunks in a world
+     *
+     * @param worldName world name (case-insensitive)
+     * @return {@code -1} if the world doesn't exist, otherwise its loaded chunks
+     */
+    public long getLoadedChunks(@NotNull final String worldName) {
+        final WorldChunks chunks = worlds.get(worldName.toLowerCase(Locale.ROOT));
+        // A chunk loaded before the tracker could be unloaded before it was counted
+        return (chunks == null) ? -1 : Math.max(chunks.loaded.sum(), 0);
+    }
+
+    /**
+     * Get the number of force loaded chunks in a world, as of the last {@link #refreshForceLoaded()}
+     *
+     * @param worldName world name (case-insensitive)
+     * @return {@code -1} if the world doesn't exist, otherwise its force loaded chunks
+     */
+    public int getForceLoadedChunks(@NotNull final String worldName) {
+        final WorldChunks chunks = worlds.get(worldName.toLowerCase(Locale.ROOT));
+        return (chunks == null) ? -1 : chunks.forceLoaded;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(@NotNull final ChunkLoadEvent event) {
+        final WorldChunks chunks = getOrCreate(event.getWorld());
+
+        if (trackSections) {
+            chunks.addToSection(event.getChunk().getX(), event.getChunk().getZ(), 1);
+        } else {
+            chunks.loaded.increment();
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(@NotNull final ChunkUnloadEvent event) {
+        final WorldChunks chunks = worlds.get(event.getWorld().getName().toLowerCase(Locale.ROOT));
+
+        // The world has already been unloaded
+        if (chunks == null) {
+            return;
+        }
+
+        if (trackSections) {
+            chunks.addToSection(event.getChunk().getX(), event.getChunk().getZ(), -1);
+        } else {
+            chunks.loaded.decrement();
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldLoad(@NotNull final WorldLoadEvent event) {
+        // Spawn chunks may have been loaded before the event was called
+        seed(event.getWorld());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(@NotNull final WorldUnloadEvent event) {
+        worlds.remove(event.getWorld().getName().toLowerCase(Locale.ROOT));
+    }
+
+    private static final class WorldChunks {
+
+        private final LongAdder loaded = new LongAdder();
+        private volatile int forceLoaded;
+
+        /**
+         * Loaded chunks per section, sections without loaded chunks are removed, unless they are waiting to be counted
+         */
+        private final Map<Long, Integer> sections = new ConcurrentHashMap<>();
+
+        /**
+         * Sections that were counted by {@link #seedSection(World, WorldChunks, int, int)}
+         */
+        private final Set<Long> seeded = ConcurrentHashMap.newKeySet();
+
+        /**
+         * Add to the count of a section and to the loaded chunks, a section is never counted below zero, so a chunk
+         * that was loaded before its section was counted doesn't make the total negative when it unloads
+         * <br/>
+         * Such an unload means the section has chunks the seed missed, the section is then kept at zero so that the
+         * next {@code RegionCollector} pass counts it.
+         */
+        private void addToSection(final int chunkX, final int chunkZ, final int amount) {
+            final int[] applied = new int[1];
+
+            sections.compute(sectionKey(chunkX, chunkZ), (__, count) -> {
+                if ((count == null || count == 0) && amount < 0) {
+                    return 0;
+                }
+
+                final int previous = (count == null) ? 0 : count;
+                final int newCount = Math.max(previous + amount, 0);
+                applied[0] = newCount - previous;
+                return (newCount == 0) ? null : newCount;
+            });
+
+            loaded.add(applied[0]);
+        }
+
+    }
+
+}
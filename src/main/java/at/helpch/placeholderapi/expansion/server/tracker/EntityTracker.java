@@ -0,0 +1,166 @@
+package at.helpch.placeholderapi.expansion.server.tracker;
+
+import at.helpch.placeholderapi.expansion.server.util.Capabilities;
+import com.destroystokyo.paper.event.entity.EntityAddToWorldEvent;
+import com.destroystokyo.paper.event.entity.EntityRemoveFromWorldEvent;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps count of the entities of every world per {@link EntityType}, so the entity placeholders don't have to copy
+ * {@link World#getEntities()}.
+ * <br/>
+ * On Paper the counts are kept up to date with {@link EntityAddToWorldEvent} and {@link EntityRemoveFromWorldEvent},
+ * on other servers {@link #reconcile()} has to be called periodically. Counts are only modified from the main thread.
+ */
+public final class EntityTracker implements Listener {
+
+    private static final EntityType[] TYPES = EntityType.values();
+    private static final boolean[] LIVING = new boolean[TYPES.length];
+
+    static {
+        for (final EntityType type : TYPES) {
+            final Class<?> entityClass = type.getEntityClass();
+            LIVING[type.ordinal()] = entityClass != null && LivingEntity.class.isAssignableFrom(entityClass);
+        }
+    }
+
+    private final Map<String, EntityCounts> worlds = new ConcurrentHashMap<>();
+
+    /**
+     * Get the listener that keeps the counts up to date, only available on Paper
+     *
+     * @param capabilities capabilities of the server
+     * @return listener, or {@code null} if the server doesn't have the entity add/remove events
+     */
+    public @Nullable Listener createPaperListener(@NotNull final Capabilities capabilities) {
+        return capabilities.hasEntityEvents() ? new PaperListener() : null;
+    }
+
+    /**
+     * Count all the entities of all worlds again, must be called from the main thread
+     */
+    public void reconcile() {
+        for (final World world : Bukkit.getWorlds()) {
+            final EntityCounts counts = new EntityCounts();
+
+            for (final Entity entity : world.getEntities()) {
+                counts.add(entity.getType(), 1);
+            }
+
+            worlds.put(key(world), counts);
+        }
+    }
+
+    /**
+     * Parse an entity type (case-insensitive)
+     *
+     * @param name type name, e.g. {@code item}
+     * @return type, or {@code null} if there is no type with that name
+     */
+    public static @Nullable EntityType parseType(@NotNull final String name) {
+        try {
+            return EntityType.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static @NotNull String key(@NotNull final World world) {
+        return world.getName().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Get the number of entities in a world
+     *
+     * @param worldName world name (case-insensitive)
+     * @return {@code -1} if the world doesn't exist, otherwise its entities
+     */
+    public int getEntities(@NotNull final String worldName) {
+        final EntityCounts counts = worlds.get(worldName.toLowerCase(Locale.ROOT));
+        return (counts == null) ? -1 : counts.total;
+    }
+
+    /**
+     * Get the number of living entities in a world
+     *
+     * @param worldName world name (case-insensitive)
+     * @return {@code -1} if the world doesn't exist, otherwise its living entities
+     */
+    public int getLivingEntities(@NotNull final String worldName) {
+        final EntityCounts counts = worlds.get(worldName.toLowerCase(Locale.ROOT));
+        return (counts == null) ? -1 : counts.living;
+    }
+
+    /**
+     * Copy the number of entities per type in a world
+     *
+     * @param worldName world name (case-insensitive)
+     * @return {@code null} if the world doesn't exist, otherwise its entities indexed by {@link EntityType#ordinal()}
+     */
+    public @Nullable int[] copyEntities(@NotNull final String worldName) {
+        final EntityCounts counts = worlds.get(worldName.toLowerCase(Locale.ROOT));
+        return (counts == null) ? null : counts.byType.clone();
+    }
+
+    private void add(@NotNull final World world, @NotNull final EntityType type, final int amount) {
+        worlds.computeIfAbsent(key(world), __ -> new EntityCounts()).add(type, amount);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(@NotNull final WorldUnloadEvent event) {
+        worlds.remove(key(event.getWorld()));
+    }
+
+    private static final class EntityCounts {
+
+        private final int[] byType = new int[TYPES.length];
+        private int total;
+        private int living;
+
+        private void add(@NotNull final EntityType type, final int amount) {
+            if (amount == 0) {
+                return;
+            }
+
+            byType[type.ordinal()] += amount;
+            total += amount;
+
+            if (LIVING[type.ordinal()]) {
+                living += amount;
+            }
+        }
+
+    }
+
+    /**
+     * Kept separate from {@link EntityTracker} so the Paper events are only loaded if they exist
+     */
+    private final class PaperListener implements Listener {
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onEntityAdd(@NotNull final EntityAddToWorldEvent event) {
+            add(event.getWorld(), event.getEntity().getType(), 1);
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onEntityRemove(@NotNull final EntityRemoveFromWorldEvent event) {
+            add(event.getWorld(), event.getEntity().getType(), -1);
+        }
+
+    }
+
+}
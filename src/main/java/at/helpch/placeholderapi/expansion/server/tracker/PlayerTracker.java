@@ -0,0 +1,108 @@
+package at.helpch.placeholderapi.expansion.server.tracker;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps count of the online players of every world, so the online placeholders don't have to copy
+ * {@link World#getPlayers()}.
+ * <br/>
+ * Counts are kept up to date from the join, quit and world change events, so reading a world is a single atomic load.
+ * Events may be fired from any region thread on Folia.
+ */
+public final class PlayerTracker implements Listener {
+
+    private final Map<String, WorldCounter> worlds = new ConcurrentHashMap<>();
+
+    private static @NotNull String key(@NotNull final World world) {
+        return world.getName().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Count the players that are already online, must be called from the main thread (the global region on Folia)
+     * <br/>
+     * The players are grouped by their world rather than read from {@link World#getPlayers()}, which on Folia may only
+     * be called from the thread owning the world's regions.
+     */
+    public void seed() {
+        worlds.clear();
+
+        for (final World world : Bukkit.getWorlds()) {
+            getCounter(world);
+        }
+
+        for (final Player player : Bukkit.getOnlinePlayers()) {
+            getCounter(player.getWorld()).add(1);
+        }
+    }
+
+    private @NotNull WorldCounter getCounter(@NotNull final World world) {
+        return worlds.computeIfAbsent(key(world), __ -> new WorldCounter());
+    }
+
+    /**
+     * Get the number of online players in a world
+     *
+     * @param worldName world name (case-insensitive)
+     * @return {@code -1} if the world isn't loaded, otherwise its online players
+     */
+    public int getOnline(@NotNull final String worldName) {
+        final WorldCounter counter = worlds.get(worldName.toLowerCase(Locale.ROOT));
+        return (counter == null) ? -1 : counter.online.get();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(@NotNull final PlayerJoinEvent event) {
+        getCounter(event.getPlayer().getWorld()).add(1);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(@NotNull final PlayerQuitEvent event) {
+        getCounter(event.getPlayer().getWorld()).add(-1);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldChange(@NotNull final PlayerChangedWorldEvent event) {
+        getCounter(event.getFrom()).add(-1);
+        getCounter(event.getPlayer().getWorld()).add(1);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldLoad(@NotNull final WorldLoadEvent event) {
+        getCounter(event.getWorld());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(@NotNull final WorldUnloadEvent event) {
+        worlds.remove(key(event.getWorld()));
+    }
+
+    /**
+     * Online players of a world
+     */
+    private static final class WorldCounter {
+
+        private final AtomicInteger online = new AtomicInteger();
+
+        private void add(final int amount) {
+            online.addAndGet(amount);
+        }
+
+    }
+
+}
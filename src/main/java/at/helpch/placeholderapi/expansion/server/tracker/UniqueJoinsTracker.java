@@ -0,0 +1,176 @@
+package at.helpch.placeholderapi.expansion.server.tracker;
+
+import at.helpch.placeholderapi.expansion.server.util.Logging;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps track of how many players have ever joined the server without listing the playerdata folder on every request.
+ * <br/>
+ * The count is seeded once from the playerdata folder, then incremented when a player joins for the first time and
+ * persisted to a small file so the folder doesn't have to be scanned again after a restart. Players that join for the
+ * first time while the folder is being counted are only added if the count didn't include their file.
+ */
+public final class UniqueJoinsTracker implements Listener {
+
+    private final AtomicInteger uniqueJoins = new AtomicInteger();
+    private final Path file;
+
+    /**
+     * Players that joined for the first time before the count was loaded or seeded, guarded by {@code this}
+     */
+    private final Set<UUID> joinedBeforeLoad = new HashSet<>();
+
+    private volatile boolean loaded;
+    private volatile boolean dirty;
+
+    /**
+     * Set once the tracker is {@link #close() closed}, so a seed still running doesn't save over a newer tracker,
+     * guarded by {@code this}
+     */
+    private boolean closed;
+
+    /**
+     * @param file file the count is persisted to
+     */
+    public UniqueJoinsTracker(@NotNull final Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Whether the count was read from the persisted file, if not it has to be {@link #seed(Path) seeded}
+     *
+     * @return true if the persisted count was loaded
+     */
+    public boolean load() {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+
+        try {
+            final String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim();
+            uniqueJoins.addAndGet(Integer.parseInt(content));
+            loaded = true;
+            return true;
+        } catch (IOException | NumberFormatException e) {
+            Logging.error(e, "Could not read unique joins from \"{0}\", the playerdata folder will be counted again", file);
+            return false;
+        }
+    }
+
+    /**
+     * Count the players in the playerdata folder, this is a blocking operation and should be run asynchronously
+     *
+     * @param playerDataFolder playerdata folder of the main world
+     */
+    public void seed(@NotNull final Path playerDataFolder) {
+        final Set<String> counted = new HashSet<>();
+
+        if (Files.isDirectory(playerDataFolder)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(playerDataFolder, "*.dat")) {
+                for (final Path playerData : stream) {
+                    final String name = playerData.getFileName().toString();
+                    counted.add(name.substring(0, name.length() - ".dat".length()));
+                }
+            } catch (IOException e) {
+                // Count from 0 rather than queuing the players that join forever and never saving
+                Logging.error(e, "Could not count the players in \"{0}\", only the players joining from now on will be counted", playerDataFolder);
+                counted.clear();
+            }
+        }
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+
+            int count = counted.size();
+
+            // The file of a player who joined while the folder was being counted may or may not have been written yet
+            for (final UUID player : joinedBeforeLoad) {
+                if (!counted.contains(player.toString())) {
+                    count++;
+                }
+            }
+
+            joinedBeforeLoad.clear();
+            uniqueJoins.addAndGet(count);
+            loaded = true;
+            dirty = true;
+            save();
+        }
+    }
+
+    /**
+     * Write the count to the file if it changed since the last save
+     */
+    public synchronized void save() {
+        if (closed || !loaded || !dirty) {
+            return;
+        }
+
+        dirty = false;
+
+        try {
+            Files.createDirectories(file.getParent());
+
+            final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(temp, String.valueOf(uniqueJoins.get()).getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            dirty = true;
+            Logging.error(e, "Could not save unique joins to \"{0}\"", file);
+        }
+    }
+
+    /**
+     * Save the count a last time, later saves and seeds are ignored
+     */
+    public synchronized void close() {
+        save();
+        closed = true;
+    }
+
+    /**
+     * Get the number of unique joins, the last known value is returned while the playerdata folder is being counted
+     *
+     * @return unique joins
+     */
+    public int getUniqueJoins() {
+        return uniqueJoins.get();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(@NotNull final PlayerJoinEvent event) {
+        if (event.getPlayer().hasPlayedBefore()) {
+            return;
+        }
+
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    joinedBeforeLoad.add(event.getPlayer().getUniqueId());
+                    return;
+                }
+            }
+        }
+
+        uniqueJoins.incrementAndGet();
+        dirty = true;
+    }
+
+}
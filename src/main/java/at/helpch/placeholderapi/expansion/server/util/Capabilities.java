@@ -0,0 +1,310 @@
+package at.helpch.placeholderapi.expansion.server.util;
+
+import io.papermc.paper.ServerBuildInfo;
+import org.bukkit.Bukkit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+
+/**
+ * Features of the server and of the JVM the expansion runs on, probed once when the expansion registers and passed to
+ * the classes that depend on them.
+ * <br/>
+ * Values that can't be read through the API (e.g. the tps on Spigot) are bound to a {@link MethodHandle} during the
+ * probe, so reading them doesn't go through reflection again.
+ */
+public final class Capabilities {
+
+    /**
+     * Config classes of the server variants, checked in the order of their names
+     */
+    private static final Map<String, String> VARIANTS = new TreeMap<>();
+
+    private static final double[] NO_TPS = {0, 0, 0};
+
+    /**
+     * Also read by {@link Scheduling}, which is static and can't be given the capabilities
+     */
+    static final boolean FOLIA = isClassPresent("io.papermc.paper.threadedregions.RegionizedServer");
+
+    static {
+        VARIANTS.put("net.pl3x.purpur.PurpurConfig", "Purpur");
+        VARIANTS.put("gg.airplane.AirplaneConfig", "Airplane");
+        VARIANTS.put("com.tuinity.tuinity.config.TuinityConfig", "Tuinity");
+        VARIANTS.put("io.papermc.paper.configuration.ConfigurationLoaders", "Paper"); // New config location for Paper 1.19+
+        VARIANTS.put("com.destroystokyo.paper.PaperConfig", "Paper"); // Still supported by Paper, but deprecated.
+    }
+
+    private final boolean paper;
+    private final boolean folia;
+    private final boolean purpur;
+    private final boolean spigot;
+    private final boolean buildInfo;
+    private final boolean tpsMethod; // Paper and its forks have Bukkit#getTps
+    private final boolean tickEvents;
+    private final boolean entityEvents; // Paper's EntityAddToWorldEvent and EntityRemoveFromWorldEvent
+    private final boolean flightRecorder;
+    private final boolean managementBeans; // The com.sun.management extensions of the JMX beans
+    private final MethodHandle tpsGetter;
+    private final String variant;
+    private final String build;
+    private final String minecraftVersion;
+    private final String summary;
+
+    private Capabilities() {
+        this.paper = isClassPresent("io.papermc.paper.configuration.ConfigurationLoaders") || isClassPresent("com.destroystokyo.paper.PaperConfig");
+        this.folia = FOLIA;
+        this.purpur = isClassPresent("org.purpurmc.purpur.PurpurConfig") || isClassPresent("net.pl3x.purpur.PurpurConfig");
+        this.spigot = isClassPresent("org.spigotmc.SpigotConfig");
+        this.buildInfo = isClassPresent("io.papermc.paper.ServerBuildInfo");
+        this.tpsMethod = hasMethod(Bukkit.class, "getTPS");
+        // Folia ships the tick events but has no server-wide tick to call them for
+        this.tickEvents = !folia
+            && isClassPresent("com.destroystokyo.paper.event.server.ServerTickStartEvent")
+            && isClassPresent("com.destroystokyo.paper.event.server.ServerTickEndEvent");
+        this.entityEvents = isClassPresent("com.destroystokyo.paper.event.entity.EntityAddToWorldEvent")
+            && isClassPresent("com.destroystokyo.paper.event.entity.EntityRemoveFromWorldEvent");
+        this.flightRecorder = isClassPresent("jdk.jfr.Event");
+        this.managementBeans = isClassPresent("com.sun.management.OperatingSystemMXBean")
+            && isClassPresent("com.sun.management.ThreadMXBean")
+            && isClassPresent("com.sun.management.GarbageCollectionNotificationInfo");
+
+        // The MinecraftServer is only looked up if the API is not enough
+        final Object minecraftServer = (tpsMethod && buildInfo) ? null : getMinecraftServer();
+        this.tpsGetter = (tpsMethod || minecraftServer == null) ? null : getTpsGetter(minecraftServer);
+        this.variant = buildInfo ? ServerBuildInfo.buildInfo().brandName() : findVariant(minecraftServer);
+        this.build = buildInfo ? getBuildNumber() : findBuild(variant);
+        this.minecraftVersion = findMinecraftVersion();
+
+        final StringJoiner summary = new StringJoiner(",");
+        appendIf(summary, paper, "paper");
+        appendIf(summary, folia, "folia");
+        appendIf(summary, purpur, "purpur");
+        appendIf(summary, spigot, "spigot");
+        appendIf(summary, buildInfo, "build_info");
+        appendIf(summary, !folia && (tpsMethod || tpsGetter != null), "tps");
+        appendIf(summary, tickEvents, "tick_events");
+        appendIf(summary, entityEvents, "entity_events");
+        appendIf(summary, flightRecorder, "jfr");
+        appendIf(summary, managementBeans, "management_beans");
+        this.summary = summary.toString();
+    }
+
+    /**
+     * Probe the features of the server, must be called once the server is started
+     *
+     * @return capabilities
+     */
+    public static @NotNull Capabilities probe() {
+        return new Capabilities();
+    }
+
+    private static boolean isClassPresent(@NotNull final String name) {
+        return findClass(name) != null;
+    }
+
+    private static boolean hasMethod(@NotNull final Class<?> owner, @NotNull final String name) {
+        try {
+            owner.getMethod(name);
+            return true;
+        } catch (NoSuchMethodException ignored) {
+            return false;
+        }
+    }
+
+    private static void appendIf(@NotNull final StringJoiner joiner, final boolean condition, @NotNull final String value) {
+        if (condition) {
+            joiner.add(value);
+        }
+    }
+
+    private static @Nullable Object getMinecraftServer() {
+        Class<?> serverClass = findClass("net.minecraft.server.MinecraftServer");
+
+        if (serverClass == null) {
+            // Before 1.17 the class is in a package named after the version, like the CraftBukkit classes
+            final String craftServer = Bukkit.getServer().getClass().getName();
+            final String craftPackage = craftServer.substring(0, craftServer.lastIndexOf('.'));
+            serverClass = findClass("net.minecraft.server." + craftPackage.substring(craftPackage.lastIndexOf('.') + 1) + ".MinecraftServer");
+        }
+
+        if (serverClass == null) {
+            Logging.warn("Could not find class MinecraftServer");
+            return null;
+        }
+
+        try {
+            return serverClass.getMethod("getServer").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            Logging.error(e, "Could not invoke method MinecraftServer#getServer");
+            return null;
+        }
+    }
+
+    private static @Nullable Class<?> findClass(@NotNull final String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException ignored) {
+            return null;
+        }
+    }
+
+    private static @Nullable MethodHandle getTpsGetter(@NotNull final Object minecraftServer) {
+        try {
+            return MethodHandles.publicLookup()
+                .unreflectGetter(minecraftServer.getClass().getField("recentTps"))
+                .bindTo(minecraftServer);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            Logging.error(e, "Could not find field 'recentTps' in class {0}", minecraftServer.getClass().getName());
+            return null;
+        }
+    }
+
+    private static @NotNull String findVariant(@Nullable final Object minecraftServer) {
+        for (final Map.Entry<String, String> entry : VARIANTS.entrySet()) {
+            if (isClassPresent(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+
+        // Source: https://github.com/PaperMC/Paper/blob/f7717c3/patches/server/0027-Show-Paper-in-client-crashes-server-lists-and-Mojang.patch#L17
+        if (minecraftServer != null) {
+            try {
+                return (String) minecraftServer.getClass().getMethod("getServerModName").invoke(minecraftServer);
+            } catch (ReflectiveOperationException ignored) { }
+        }
+
+        return isClassPresent("org.spigotmc.SpigotConfig") ? "Spigot" : "Unknown"; // Not even spigot??
+    }
+
+    // Available since recent 1.20.6 versions of Paper. Allows easier retrieval of certain info.
+    private static @NotNull String getBuildNumber() {
+        final OptionalInt buildNumber = ServerBuildInfo.buildInfo().buildNumber();
+        return buildNumber.isPresent() ? String.valueOf(buildNumber.getAsInt()) : "Unknown";
+    }
+
+    private static @NotNull String findBuild(@NotNull final String variant) {
+        final String[] buildParts = Bukkit.getVersion().split("-");
+
+        switch (variant.toLowerCase()) {
+            case "spigot":
+                return buildParts[0];
+
+            // Source: https://github.com/PaperMC/Paper/blob/0ae58c0/patches/server/0001-Setup-Gradle-project.patch#L75
+            case "paper":
+            // Source: https://github.com/Tuinity/Tuinity/blob/4c31ea1/patches/server/0001-Build-changes.patch#L34
+            case "tuinity":
+            // Source: https://github.com/PurpurMC/Purpur/blob/c049bfb/patches/server/0002-Rebrand.patch#L44
+            case "purpur":
+            // Source: https://github.com/TECHNOVE/Airplane/blob/af3563c/patches/server/0002-Airplane-Branding-Changes.patch#L41
+            case "airplane": {
+                // Format: git-<Paper/Tuinity/Purpur/Airplane>-<version>
+                if (buildParts.length >= 3) {
+                    if (buildParts[2].contains(" ")) {
+                        return buildParts[2].substring(0, buildParts[2].indexOf(" "));
+                    } else {
+                        return buildParts[2];
+                    }
+                }
+            }
+        }
+
+        return "Unknown";
+    }
+
+    private @NotNull String findMinecraftVersion() {
+        if (paper && hasMethod(Bukkit.class, "getMinecraftVersion")) {
+            // Paper method from 2020 - returns the version like 1.20.1
+            return Bukkit.getMinecraftVersion();
+        }
+
+        // The version is formatted as 1.20.1-R0.1-SNAPSHOT
+        return Bukkit.getBukkitVersion().split("-")[0];
+    }
+
+    /**
+     * Get the tps of the last 1, 5 and 15 minutes
+     *
+     * @return tps, zeros if the server doesn't have a server-wide tps (e.g. Folia)
+     */
+    public @NotNull double[] getTps() {
+        if (folia) {
+            return NO_TPS.clone();
+        }
+
+        if (tpsMethod) {
+            return Bukkit.getTPS();
+        }
+
+        if (tpsGetter == null) {
+            return NO_TPS.clone();
+        }
+
+        try {
+            return (double[]) tpsGetter.invokeExact();
+        } catch (Throwable e) {
+            return NO_TPS.clone();
+        }
+    }
+
+    public boolean isPaper() {
+        return paper;
+    }
+
+    /**
+     * @return true if the server is running Folia, in which case worlds, chunks and entities can only be accessed from
+     * the thread of the region that owns them
+     */
+    public boolean isFolia() {
+        return folia;
+    }
+
+    public boolean hasTickEvents() {
+        return tickEvents;
+    }
+
+    public boolean hasEntityEvents() {
+        return entityEvents;
+    }
+
+    /**
+     * @return true if the JVM can record Flight Recorder events
+     */
+    public boolean hasFlightRecorder() {
+        return flightRecorder;
+    }
+
+    /**
+     * @return true if the JVM has the {@code com.sun.management} extensions of the JMX beans (cpu load, allocated
+     * memory per thread, garbage collection notifications)
+     */
+    public boolean hasManagementBeans() {
+        return managementBeans;
+    }
+
+    public @NotNull String getVariant() {
+        return variant;
+    }
+
+    public @NotNull String getBuild() {
+        return build;
+    }
+
+    public @NotNull String getMinecraftVersion() {
+        return minecraftVersion;
+    }
+
+    /**
+     * @return comma separated features of the server, e.g. {@code paper,spigot,build_info,tps,tick_events,jfr}
+     */
+    public @NotNull String getSummary() {
+        return summary;
+    }
+
+}
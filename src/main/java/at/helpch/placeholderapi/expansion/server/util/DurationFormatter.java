@@ -0,0 +1,121 @@
+package at.helpch.placeholderapi.expansion.server.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Formats durations as {@code #w #d #h #m #s}, the suffixes are resolved once and the text is written into a reused
+ * builder so only the returned string is allocated.
+ */
+public final class DurationFormatter {
+
+    public enum Unit {
+
+        YEAR(365L * 24 * 60 * 60 * 1000),
+        WEEK(7L * 24 * 60 * 60 * 1000),
+        DAY(24L * 60 * 60 * 1000),
+        HOUR(60L * 60 * 1000),
+        MINUTE(60L * 1000),
+        SECOND(1000L),
+        MILLISECOND(1L);
+
+        private static final Unit[] VALUES = values();
+
+        private final long millis;
+
+        Unit(final long millis) {
+            this.millis = millis;
+        }
+
+        /**
+         * Get the name of the unit in the config, e.g. {@code time.suffix.<name>}
+         *
+         * @return name
+         */
+        public @NotNull String getName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        /**
+         * Parse a unit from its config name
+         *
+         * @param name name
+         * @return unit, or {@code null} if there is no unit with that name
+         */
+        public static @Nullable Unit parse(@NotNull final String name) {
+            for (final Unit unit : VALUES) {
+                if (unit.getName().equalsIgnoreCase(name)) {
+                    return unit;
+                }
+            }
+
+            return null;
+        }
+
+    }
+
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(32));
+
+    /**
+     * Suffixes indexed by {@link Unit#ordinal()}, {@code null} for units that are not shown
+     */
+    private final String[] suffixes = new String[Unit.VALUES.length];
+    private final Unit largestUnit;
+    private final Unit smallestUnit;
+    private final int maxUnits;
+
+    /**
+     * @param suffixes     suffixes, the key is the {@link Unit#getName() name} of the unit, units without a suffix are not shown
+     * @param largestUnit  largest unit, bigger durations are shown in this unit (e.g. {@code 10d} instead of {@code 1w 3d})
+     * @param smallestUnit smallest unit, anything smaller is dropped
+     * @param maxUnits     how many units are shown at most, {@code 0} for no limit
+     */
+    public DurationFormatter(
+        @NotNull final Map<@NotNull String, @Nullable Object> suffixes,
+        @NotNull final Unit largestUnit, @NotNull final Unit smallestUnit, final int maxUnits
+    ) {
+        for (final Unit unit : Unit.VALUES) {
+            this.suffixes[unit.ordinal()] = Objects.toString(suffixes.get(unit.getName()), null);
+        }
+
+        this.largestUnit = largestUnit;
+        this.smallestUnit = smallestUnit;
+        this.maxUnits = (maxUnits <= 0) ? Integer.MAX_VALUE : maxUnits;
+    }
+
+    /**
+     * Format a duration
+     *
+     * @param millis duration in milliseconds
+     * @return duration formatted, empty if it is shorter than the smallest unit
+     */
+    public @NotNull String format(long millis) {
+        final StringBuilder builder = BUILDER.get();
+        builder.setLength(0);
+
+        int shown = 0;
+
+        for (int index = largestUnit.ordinal(); index <= smallestUnit.ordinal() && shown < maxUnits; index++) {
+            final Unit unit = Unit.VALUES[index];
+            final long value = millis / unit.millis;
+            millis -= value * unit.millis;
+
+            if (value <= 0 || suffixes[index] == null) {
+                continue;
+            }
+
+            if (shown++ > 0) {
+                builder.append(' ');
+            }
+
+            builder.append(value).append(suffixes[index]);
+        }
+
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,49 @@
+package at.helpch.placeholderapi.expansion.server.util;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Shared {@link String} instances for small non-negative numbers, so that counters like {@code online} or
+ * {@code ram_used} do not allocate a new string on every request
+ */
+public final class NumberStrings {
+
+    /**
+     * Numbers below this are cached, enough for player counts and the memory of most servers in MiB
+     */
+    private static final int SIZE = 1 << 16;
+
+    /**
+     * Filled lazily, strings are immutable, so a racy fill can at worst create a duplicate
+     */
+    private static final String[] STRINGS = new String[SIZE];
+
+    static {
+        for (int number = 0; number < 1_024; number++) {
+            STRINGS[number] = Integer.toString(number);
+        }
+    }
+
+    /**
+     * Get the string of a number, the same as {@link String#valueOf(long)}
+     *
+     * @param number number
+     * @return a shared string if the number is small enough, otherwise a new one
+     */
+    public static @NotNull String of(final long number) {
+        if (number < 0 || number >= SIZE) {
+            return Long.toString(number);
+        }
+
+        final int index = (int) number;
+        String string = STRINGS[index];
+
+        if (string == null) {
+            string = Integer.toString(index);
+            STRINGS[index] = string;
+        }
+
+        return string;
+    }
+
+}
@@ -0,0 +1,121 @@
+package at.helpch.placeholderapi.expansion.server.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules tasks with the Bukkit scheduler, or with the region schedulers on Folia where the Bukkit scheduler is not
+ * available.
+ */
+public final class Scheduling {
+
+    /**
+     * Handle of a scheduled task
+     */
+    @FunctionalInterface
+    public interface Task {
+
+        void cancel();
+
+    }
+
+    /**
+     * Run a task repeatedly on the main thread, or on the global region thread on Folia
+     *
+     * @param plugin plugin that owns the task
+     * @param task   task
+     * @param delay  delay in ticks
+     * @param period period in ticks
+     * @return task handle
+     */
+    public static @NotNull Task runTimer(@NotNull final Plugin plugin, @NotNull final Runnable task, final long delay, final long period) {
+        if (Capabilities.FOLIA) {
+            return Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, __ -> task.run(), Math.max(delay, 1), period)::cancel;
+        }
+
+        return Bukkit.getScheduler().runTaskTimer(plugin, task, delay, period)::cancel;
+    }
+
+    /**
+     * Run a task repeatedly outside of the main thread
+     *
+     * @param plugin plugin that owns the task
+     * @param task   task
+     * @param delay  delay in ticks
+     * @param period period in ticks
+     * @return task handle
+     */
+    public static @NotNull Task runTimerAsync(@NotNull final Plugin plugin, @NotNull final Runnable task, final long delay, final long period) {
+        if (Capabilities.FOLIA) {
+            return Bukkit.getAsyncScheduler().runAtFixedRate(plugin, __ -> task.run(), delay * 50, period * 50, TimeUnit.MILLISECONDS)::cancel;
+        }
+
+        return Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, task, delay, period)::cancel;
+    }
+
+    /**
+     * Run a task once on the main thread, or on the global region thread on Folia
+     *
+     * @param plugin plugin that owns the task
+     * @param task   task
+     */
+    public static void runTask(@NotNull final Plugin plugin, @NotNull final Runnable task) {
+        if (Capabilities.FOLIA) {
+            Bukkit.getGlobalRegionScheduler().execute(plugin, task);
+        } else {
+            Bukkit.getScheduler().runTask(plugin, task);
+        }
+    }
+
+    /**
+     * Run a task once outside of the main thread
+     *
+     * @param plugin plugin that owns the task
+     * @param task   task
+     */
+    public static void runAsync(@NotNull final Plugin plugin, @NotNull final Runnable task) {
+        if (Capabilities.FOLIA) {
+            Bukkit.getAsyncScheduler().runNow(plugin, __ -> task.run());
+        } else {
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, task);
+        }
+    }
+
+    /**
+     * Run a task once on the thread that owns a chunk, or on the main thread if the server isn't running Folia
+     *
+     * @param plugin plugin that owns the task
+     * @param world  world of the chunk
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     * @param task   task
+     */
+    public static void runAtChunk(@NotNull final Plugin plugin, @NotNull final World world, final int chunkX, final int chunkZ, @NotNull final Runnable task) {
+        if (Capabilities.FOLIA) {
+            Bukkit.getRegionScheduler().execute(plugin, world, chunkX, chunkZ, task);
+        } else {
+            Bukkit.getScheduler().runTask(plugin, task);
+        }
+    }
+
+    /**
+     * Run a task once on the thread that owns an entity, or on the main thread if the server isn't running Folia
+     *
+     * @param plugin plugin that owns the task
+     * @param entity entity, the task is not run if it is removed first
+     * @param task   task
+     */
+    public static void runAtEntity(@NotNull final Plugin plugin, @NotNull final Entity entity, @NotNull final Runnable task) {
+        if (Capabilities.FOLIA) {
+            entity.getScheduler().run(plugin, __ -> task.run(), null);
+        } else {
+            Bukkit.getScheduler().runTask(plugin, task);
+        }
+    }
+
+}
@@ -0,0 +1,25 @@
+package at.helpch.placeholderapi.expansion.server.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Threads of the background samplers and of the metrics exporter
+ * <br/>
+ * Replaced on Java 21 by {@code src/java21}, which runs them on virtual threads.
+ */
+public final class Threads {
+
+    /**
+     * Create a factory of daemon threads
+     *
+     * @param name name of the threads
+     * @return thread factory
+     */
+    public static @NotNull ThreadFactory newFactory(@NotNull final String name) {
+        return new ThreadFactoryBuilder().setNameFormat(name).setDaemon(true).build();
+    }
+
+}
@@ -1,5 +1,10 @@
 package at.helpch.placeholderapi.expansion.server.util;
 
+import at.helpch.placeholderapi.expansion.server.resolver.PlaceholderResolver;
+import at.helpch.placeholderapi.expansion.server.snapshot.ServerSnapshot;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import me.clip.placeholderapi.PlaceholderAPI;
 import me.clip.placeholderapi.PlaceholderAPIPlugin;
 import org.bukkit.OfflinePlayer;
@@ -7,33 +12,51 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.time.DateTimeException;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.time.temporal.ChronoUnit;
-import java.util.HashMap;
 import java.util.Locale;
-import java.util.Map;
 import java.util.Optional;
-import java.util.StringJoiner;
-import java.util.function.BiConsumer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 public final class TimeFormatter {
 
-    private final Map<String, DateTimeFormatter> dateFormatsCache = new HashMap<>();
+    /**
+     * How many patterns are kept in {@link #dateFormatsCache}, formats can be built from bracket placeholders so the
+     * number of distinct patterns is not bounded by the config
+     */
+    private static final int MAX_CACHED_FORMATS = 500;
+
+    /**
+     * Parsed patterns, invalid patterns are cached as {@link Optional#empty()} so they are only parsed (and logged) once
+     */
+    private final Cache<String, Optional<DateTimeFormatter>> dateFormatsCache = CacheBuilder.newBuilder()
+        .maximumSize(MAX_CACHED_FORMATS)
+        .recordStats()
+        .build();
+
+    /**
+     * Renderers of the {@code time_<format>} placeholders, shared by every request of the same format
+     */
+    private final Cache<String, TimeRenderer> timeRenderers = CacheBuilder.newBuilder()
+        .maximumSize(MAX_CACHED_FORMATS)
+        .build();
 
     private final Locale timeLocale;
     private final ZoneId timeZone;
-    private final Map<@NotNull String, @Nullable Object> timeUnitSuffixes;
+    private final DurationFormatter durationFormatter;
 
     public TimeFormatter(
         @NotNull final Locale timeLocale, @NotNull final ZoneId timeZone,
-        @NotNull Map<@NotNull String, @Nullable Object> timeUnitSuffixes
+        @NotNull final DurationFormatter durationFormatter
     ) {
         this.timeLocale = timeLocale;
         this.timeZone = timeZone;
-        this.timeUnitSuffixes = timeUnitSuffixes;
+        this.durationFormatter = durationFormatter;
     }
 
     /**
@@ -43,21 +66,37 @@ public final class TimeFormatter {
      * @return {@link DateTimeFormatter} if the argument is a valid pattern, otherwise null
      */
     public @Nullable DateTimeFormatter parseFormat(@NotNull final String pattern) {
-        return dateFormatsCache.computeIfAbsent(pattern, __ -> {
-            try {
-                return DateTimeFormatter.ofPattern(pattern, timeLocale);
-            } catch (IllegalArgumentException e) {
+        try {
+            return dateFormatsCache.get(pattern, () -> Optional.ofNullable(parseFormat0(pattern))).orElse(null);
+        } catch (ExecutionException e) {
+            Logging.error(e, "Could not get pattern \"{0}\" from cache", pattern);
+            return null;
+        }
+    }
+
+    private @Nullable DateTimeFormatter parseFormat0(@NotNull final String pattern) {
+        try {
+            return DateTimeFormatter.ofPattern(pattern, timeLocale);
+        } catch (IllegalArgumentException e) {
+            Logging.error(e, "Could not parse DateTimeFormatter from pattern \"{0}\"", pattern);
+        } catch (DateTimeException e) {
+            if (e.getMessage().contains("obtain LocalTime from TemporalAccessor")) {
+                Logging.error(e, "The pattern \"{0}\" might be missing the time definition, try to add 'HH' at the end and set it to '00' (beginning of the day)", pattern);
+            } else {
                 Logging.error(e, "Could not parse DateTimeFormatter from pattern \"{0}\"", pattern);
-            } catch (DateTimeException e) {
-                if (e.getMessage().contains("obtain LocalTime from TemporalAccessor")) {
-                    Logging.error(e, "The pattern \"{0}\" might be missing the time definition, try to add 'HH' at the end and set it to '00' (beginning of the day)", pattern);
-                } else {
-                    Logging.error(e, "Could not parse DateTimeFormatter from pattern \"{0}\"", pattern);
-                }
             }
+        }
 
-            return null;
-        });
+        return null;
+    }
+
+    /**
+     * Get the hit, miss and eviction counts of the pattern cache used by {@link #parseFormat(String)}
+     *
+     * @return cache stats
+     */
+    public @NotNull CacheStats getFormatCacheStats() {
+        return dateFormatsCache.stats();
     }
 
     /**
@@ -67,46 +106,85 @@ public final class TimeFormatter {
      * @return {@code null} if the format is empty or invalid, otherwise {@link LocalDateTime#now(ZoneId)} formatted
      */
     public @Nullable String formatTime(@NotNull final String format) {
+        final TimeRenderer renderer = getTimeRenderer(format);
+        return (renderer == null) ? null : renderer.render(System.currentTimeMillis());
+    }
+
+    /**
+     * Bind a format to a resolver that formats the current time, see {@link #formatTime(String)}
+     *
+     * @param format format
+     * @return resolver
+     */
+    public @NotNull PlaceholderResolver compileTime(@NotNull final String format) {
+        final TimeRenderer renderer = getTimeRenderer(format);
+        return (renderer == null) ? PlaceholderResolver.UNKNOWN : (player, snapshot, now) -> renderer.render(now);
+    }
+
+    private @Nullable TimeRenderer getTimeRenderer(@NotNull final String format) {
         if (format.trim().isEmpty()) {
             return null;
         }
 
-        return Optional.ofNullable(parseFormat(format))
-            .map(formatter -> LocalDateTime.now(timeZone).format(formatter))
-            .orElse(null);
+        TimeRenderer renderer = timeRenderers.getIfPresent(format);
+
+        if (renderer == null) {
+            final DateTimeFormatter formatter = parseFormat(format);
+
+            if (formatter == null) {
+                return null;
+            }
+
+            renderer = new TimeRenderer(format, formatter, timeZone);
+            timeRenderers.put(format, renderer);
+        }
+
+        return renderer;
     }
 
     /**
-     * Format time as {@code #w #d #h #m #s}
+     * Format time with the {@link DurationFormatter}
      *
      * @param time time in seconds
      * @return time formatted
      */
-    public @NotNull String formatTimeInSeconds(long time) {
-        final StringJoiner joiner = new StringJoiner(" ");
-        final BiConsumer<@NotNull Long, @Nullable Object> appendTime = (value, unit) -> {
-            if (value > 0 && unit != null) {
-                joiner.add(value + unit.toString());
-            }
-        };
+    public @NotNull String formatTimeInSeconds(final long time) {
+        return durationFormatter.format(TimeUnit.SECONDS.toMillis(time));
+    }
+
+    /**
+     * Format time with the {@link DurationFormatter}
+     *
+     * @param time time in milliseconds
+     * @return time formatted
+     */
+    public @NotNull String formatTimeInMillis(final long time) {
+        return durationFormatter.format(time);
+    }
 
-        long seconds = time;
-        long minutes = seconds / 60;
-        long hours = minutes / 60;
-        long days = hours / 24;
-        final long weeks = days / 7;
+    /**
+     * Parse the arguments of a countdown or count-up once into a resolver.
+     * <br/>
+     * Unless the arguments contain bracket placeholders (which can be different for every player), the date is only
+     * parsed once and the result is only calculated once per second and shared by every request in that second.
+     *
+     * @param args        arguments received on {@link me.clip.placeholderapi.expansion.PlaceholderExpansion#onRequest(OfflinePlayer, String)}
+     * @param isCountdown whether the time calculated is for a countdown or a count-up
+     * @param formatTime  whether the time should be formatted with {@link #formatTimeInSeconds(long)}
+     * @return resolver
+     */
+    public @NotNull PlaceholderResolver compileTimeBetween(@NotNull final String args, final boolean isCountdown, final boolean formatTime) {
+        if (args.contains("_") && args.indexOf('{') != -1) {
+            return (player, snapshot, now) -> calculateTimeBetween(player, args, isCountdown, formatTime, now);
+        }
+
+        final Target target = parseTarget(null, args, isCountdown);
 
-        seconds %= 60;
-        minutes %= 60;
-        hours %= 24;
-        days %= 7;
+        if (target.error != null) {
+            return PlaceholderResolver.constant(target.error);
+        }
 
-        appendTime.accept(weeks, timeUnitSuffixes.get("week"));
-        appendTime.accept(days, timeUnitSuffixes.get("day"));
-        appendTime.accept(hours, timeUnitSuffixes.get("hour"));
-        appendTime.accept(minutes, timeUnitSuffixes.get("minute"));
-        appendTime.accept(seconds, timeUnitSuffixes.get("second"));
-        return joiner.toString();
+        return new MemoizedTimeBetween(target.date, isCountdown, formatTime);
     }
 
     /**
@@ -123,6 +201,26 @@ public final class TimeFormatter {
         @Nullable final OfflinePlayer player, @NotNull final String args,
         final boolean isCountdown, final boolean formatTime
     ) {
+        return calculateTimeBetween(player, args, isCountdown, formatTime, System.currentTimeMillis());
+    }
+
+    private @NotNull String calculateTimeBetween(
+        @Nullable final OfflinePlayer player, @NotNull final String args,
+        final boolean isCountdown, final boolean formatTime, final long now
+    ) {
+        final Target target = parseTarget(player, args, isCountdown);
+        return (target.error != null) ? target.error : calculateTimeBetween(target.date, isCountdown, formatTime, now);
+    }
+
+    /**
+     * Parse the date of a countdown or count-up
+     *
+     * @param player      player the bracket placeholders are set for
+     * @param args        arguments received on {@link me.clip.placeholderapi.expansion.PlaceholderExpansion#onRequest(OfflinePlayer, String)}
+     * @param isCountdown whether the date is for a countdown or a count-up
+     * @return the date, or the error that should be returned instead
+     */
+    private @NotNull Target parseTarget(@Nullable final OfflinePlayer player, @NotNull final String args, final boolean isCountdown) {
         DateTimeFormatter formatter;
         String otherDateString;
 
@@ -131,7 +229,7 @@ public final class TimeFormatter {
             final String[] parts = PlaceholderAPI.setBracketPlaceholders(player, args).split("_");
 
             if (parts.length != 2) {
-                return "invalid format and time";
+                return new Target(null, "invalid format and time");
             }
 
             formatter = this.parseFormat(parts[0]);
@@ -142,36 +240,99 @@ public final class TimeFormatter {
         }
 
         if (formatter == null) {
-            return "invalid date format";
+            return new Target(null, "invalid date format");
         }
 
         try {
-            LocalDateTime now = LocalDateTime.now(timeZone);
-            LocalDateTime otherDate = LocalDateTime.parse(otherDateString, formatter);
-
-            if (otherDate.isEqual(now)) {
-                return "0";
-            }
-
-            // 'otherDate' should be after 'now' for countdowns and before for count-ups
-            if ((isCountdown && otherDate.isBefore(now)) || (!isCountdown && otherDate.isAfter(now))) {
-                return "0";
-            }
-
-            final long time = isCountdown ? now.until(otherDate, ChronoUnit.SECONDS) : otherDate.until(now, ChronoUnit.SECONDS);
-            return formatTime ? this.formatTimeInSeconds(time) : String.valueOf(time);
+            return new Target(LocalDateTime.parse(otherDateString, formatter), null);
         } catch (DateTimeParseException e) {
             final String type = isCountdown ? "countdown" : "count-up";
             Logging.error(e, "Could not calculate {0} (format: \"{1}\", other date: \"{2}\")", type, formatter.toString(), otherDateString);
-            return "invalid date";
+            return new Target(null, "invalid date");
         }
     }
 
-    public @NotNull String calculateTimeBetweenWithoutFormat(
-        @Nullable final OfflinePlayer player, @NotNull final String args,
-        final boolean isCountdown
+    /**
+     * Calculate the time between a time and another date
+     *
+     * @param otherDate   other date
+     * @param isCountdown whether the time calculated is for a countdown or a count-up
+     * @param formatTime  whether the time should be formatted with {@link #formatTimeInSeconds(long)}
+     * @param nowMillis   current time in milliseconds since the epoch
+     * @return time
+     */
+    private @NotNull String calculateTimeBetween(
+        @NotNull final LocalDateTime otherDate, final boolean isCountdown, final boolean formatTime, final long nowMillis
     ) {
-        return calculateTimeBetween(player, args, isCountdown, false);
+        final LocalDateTime now = LocalDateTime.ofInstant(Instant.ofEpochMilli(nowMillis), timeZone);
+
+        if (otherDate.isEqual(now)) {
+            return "0";
+        }
+
+        // 'otherDate' should be after 'now' for countdowns and before for count-ups
+        if ((isCountdown && otherDate.isBefore(now)) || (!isCountdown && otherDate.isAfter(now))) {
+            return "0";
+        }
+
+        final long time = isCountdown ? now.until(otherDate, ChronoUnit.SECONDS) : otherDate.until(now, ChronoUnit.SECONDS);
+        return formatTime ? this.formatTimeInSeconds(time) : String.valueOf(time);
+    }
+
+    private static final class Target {
+
+        private final LocalDateTime date;
+        private final String error;
+
+        private Target(@Nullable final LocalDateTime date, @Nullable final String error) {
+            this.date = date;
+            this.error = error;
+        }
+
+    }
+
+    /**
+     * Countdown or count-up to a fixed date, calculated at most once per second
+     */
+    private final class MemoizedTimeBetween implements PlaceholderResolver {
+
+        private final LocalDateTime otherDate;
+        private final boolean isCountdown;
+        private final boolean formatTime;
+
+        private volatile Memo memo = new Memo(Long.MIN_VALUE, "");
+
+        private MemoizedTimeBetween(@NotNull final LocalDateTime otherDate, final boolean isCountdown, final boolean formatTime) {
+            this.otherDate = otherDate;
+            this.isCountdown = isCountdown;
+            this.formatTime = formatTime;
+        }
+
+        @Override
+        public @NotNull String resolve(@Nullable final OfflinePlayer player, @NotNull final ServerSnapshot snapshot, final long now) {
+            final long second = now / 1000;
+            Memo memo = this.memo;
+
+            if (memo.second != second) {
+                memo = new Memo(second, calculateTimeBetween(otherDate, isCountdown, formatTime, now));
+                this.memo = memo;
+            }
+
+            return memo.value;
+        }
+
+    }
+
+    private static final class Memo {
+
+        private final long second;
+        private final String value;
+
+        private Memo(final long second, @NotNull final String value) {
+            this.second = second;
+            this.value = value;
+        }
+
     }
 
 }
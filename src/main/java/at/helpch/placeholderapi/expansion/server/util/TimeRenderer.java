@@ -0,0 +1,146 @@
+package at.helpch.placeholderapi.expansion.server.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Renders the current time with a format and reuses the result until the smallest time unit shown by the format
+ * changes, e.g. a format without seconds is only rendered once per minute.
+ */
+final class TimeRenderer {
+
+    private final DateTimeFormatter formatter;
+    private final ZoneId timeZone;
+    private final ChronoUnit unit;
+
+    private volatile Memo memo = new Memo(Long.MIN_VALUE, null);
+
+    /**
+     * @param pattern   pattern the formatter was created from
+     * @param formatter formatter
+     * @param timeZone  time zone of the rendered time
+     */
+    TimeRenderer(@NotNull final String pattern, @NotNull final DateTimeFormatter formatter, @NotNull final ZoneId timeZone) {
+        this.formatter = formatter;
+        this.timeZone = timeZone;
+        this.unit = getSmallestUnit(pattern);
+    }
+
+    /**
+     * Get the smallest time unit shown by a {@link DateTimeFormatter} pattern, ignoring quoted text
+     *
+     * @param pattern pattern
+     * @return smallest unit
+     */
+    static @NotNull ChronoUnit getSmallestUnit(@NotNull final String pattern) {
+        ChronoUnit smallest = ChronoUnit.DAYS;
+        boolean quoted = false;
+
+        for (int index = 0; index < pattern.length(); index++) {
+            final char letter = pattern.charAt(index);
+
+            // '' is an escaped quote, either inside or outside of quoted text, so toggling twice is fine
+            if (letter == '\'') {
+                quoted = !quoted;
+                continue;
+            }
+
+            if (quoted) {
+                continue;
+            }
+
+            final ChronoUnit unit = getUnit(letter);
+
+            if (unit != null && unit.compareTo(smallest) < 0) {
+                smallest = unit;
+            }
+        }
+
+        return smallest;
+    }
+
+    private static @Nullable ChronoUnit getUnit(final char letter) {
+        switch (letter) {
+            case 'S': // fraction-of-second
+            case 'n': // nano-of-second
+            case 'N': // nano-of-day
+            case 'A': // milli-of-day
+                return ChronoUnit.MILLIS;
+
+            case 's':
+                return ChronoUnit.SECONDS;
+
+            case 'm':
+                return ChronoUnit.MINUTES;
+
+            case 'H':
+            case 'h':
+            case 'k':
+            case 'K':
+            case 'B': // day period
+            // Zone names and offsets change with daylight saving time, which happens on the hour
+            case 'V':
+            case 'v':
+            case 'z':
+            case 'O':
+            case 'X':
+            case 'x':
+            case 'Z':
+                return ChronoUnit.HOURS;
+
+            case 'a':
+                return ChronoUnit.HALF_DAYS;
+        }
+
+        return null;
+    }
+
+    /**
+     * Render a time
+     *
+     * @param now time in milliseconds since the epoch
+     * @return time, or {@code null} if the format can't be used to format a {@link LocalDateTime}
+     */
+    @Nullable String render(final long now) {
+        Memo memo = this.memo;
+
+        if (now >= memo.expiresAt) {
+            memo = createMemo(now);
+            this.memo = memo;
+        }
+
+        return memo.value;
+    }
+
+    private @NotNull Memo createMemo(final long now) {
+        final LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(now), timeZone);
+
+        try {
+            final LocalDateTime next = time.truncatedTo(unit).plus(1, unit);
+            return new Memo(next.atZone(timeZone).toInstant().toEpochMilli(), time.format(formatter));
+        } catch (DateTimeException e) {
+            Logging.error(e, "Could not format the current time with \"{0}\"", formatter);
+            return new Memo(Long.MAX_VALUE, null);
+        }
+    }
+
+    private static final class Memo {
+
+        private final long expiresAt;
+        private final String value;
+
+        private Memo(final long expiresAt, @Nullable final String value) {
+            this.expiresAt = expiresAt;
+            this.value = value;
+        }
+
+    }
+
+}
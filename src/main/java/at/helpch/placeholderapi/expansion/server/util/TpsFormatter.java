@@ -1,132 +1,239 @@
 package at.helpch.placeholderapi.expansion.server.util;
 
+import at.helpch.placeholderapi.expansion.server.resolver.PlaceholderResolver;
+import at.helpch.placeholderapi.expansion.server.sampler.TickSampler;
+import at.helpch.placeholderapi.expansion.server.snapshot.ServerSnapshot;
 import org.bukkit.ChatColor;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.StringJoiner;
-import java.util.function.Function;
+import java.util.function.DoubleFunction;
+import java.util.function.ToDoubleFunction;
 
 public class TpsFormatter {
 
-    private final String lowColor;
-    private final String mediumColor;
-    private final String highColor;
+    private static final String SEPARATOR = ChatColor.GRAY + ", ";
+
+    private static final int LOW = 0;
+    private static final int MEDIUM = 1;
+    private static final int HIGH = 2;
+
+    private final String[] colors;
+    private final TickSampler tickSampler;
+
+    /**
+     * Every rounded tps (0 to 20) and percent (0 to 100) rendered once, with and without the {@code *} prefix, and
+     * with each color for the colored styles
+     */
+    private final String[][] plain;
+    private final String[][] percent;
+    private final String[][][] colored;
+    private final String[][][] coloredPercent;
+
+    private volatile AllTps allTps;
+    private volatile AllTps allTpsPercent;
+
+    /**
+     * Tps of all the windows joined for one snapshot
+     */
+    private static final class AllTps {
+
+        private final ServerSnapshot snapshot;
+        private final String value;
+
+        private AllTps(@NotNull final ServerSnapshot snapshot, @NotNull final String value) {
+            this.snapshot = snapshot;
+            this.value = value;
+        }
+
+    }
 
     /**
      * @param lowColor    color for {@code tps < 16.0}
      * @param mediumColor color for {@code tps < 18.0}
      * @param highColor   color for {@code tps > 18.0}
+     * @param tickSampler sampler for the {@code <n>s} and {@code <n>m} windows
      */
-    public TpsFormatter(@NotNull final String lowColor, @NotNull final String mediumColor, @NotNull final String highColor) {
-        this.lowColor = ChatColor.translateAlternateColorCodes('&', lowColor);
-        this.mediumColor = ChatColor.translateAlternateColorCodes('&', mediumColor);
-        this.highColor = ChatColor.translateAlternateColorCodes('&', highColor);
+    public TpsFormatter(
+        @NotNull final String lowColor, @NotNull final String mediumColor, @NotNull final String highColor,
+        @NotNull final TickSampler tickSampler
+    ) {
+        this.tickSampler = tickSampler;
+        this.colors = new String[]{
+            ChatColor.translateAlternateColorCodes('&', lowColor),
+            ChatColor.translateAlternateColorCodes('&', mediumColor),
+            ChatColor.translateAlternateColorCodes('&', highColor)
+        };
+
+        this.plain = render("", 20, "");
+        this.percent = render("", 100, "%");
+        this.colored = new String[colors.length][][];
+        this.coloredPercent = new String[colors.length][][];
+
+        for (int color = 0; color < colors.length; color++) {
+            colored[color] = render(colors[color], 20, "");
+            coloredPercent[color] = render(colors[color], 100, "%");
+        }
     }
 
     /**
-     * Round the tps and append a {@code *} before if the value is higher than 20.0
+     * Index of the color of a tps value in the rendered tables
      *
      * @param tps tps
-     * @return tps rounded
+     * @return {@code 2} for {@code tps > 18.0}, {@code 1} for {@code tps > 16.0}, otherwise {@code 0}
      */
-    private @NotNull String round(final double tps) {
-        final double finalTps = Math.min(Math.round(tps), 20.0);
-        return (tps > 20.0 ? "*" : "") + finalTps;
+    private static int getColorIndex(final double tps) {
+        return (tps > 18.0) ? HIGH : (tps > 16.0) ? MEDIUM : LOW;
     }
 
     /**
-     * Get the color based on the tps value
+     * Get the rendered string of a tps value from a table, rendering it if the value falls outside the table
+     *
+     * @param table  table of the style, indexed by {@code [star][value]}
+     * @param value  rounded value
+     * @param tps    tps
+     * @param prefix prefix of the style if the value has to be rendered
+     * @param suffix suffix of the style if the value has to be rendered
+     * @return rendered tps
+     */
+    private static @NotNull String lookup(
+        @NotNull final String[][] table, final long value, final double tps,
+        @NotNull final String prefix, @NotNull final String suffix
+    ) {
+        final int star = (tps > 20.0) ? 1 : 0;
+
+        if (value >= 0 && value < table[star].length) {
+            return table[star][(int) value];
+        }
+
+        return prefix + (star == 1 ? "*" : "") + (double) value + suffix;
+    }
+
+    /**
+     * Render every value of a style once, indexed by {@code [star][value]}, where {@code star} is {@code 1} for a tps
+     * higher than 20.0
+     *
+     * @param color  color prefix
+     * @param max    highest value
+     * @param suffix suffix (e.g. {@code %})
+     * @return rendered table
+     */
+    private static @NotNull String[][] render(@NotNull final String color, final int max, @NotNull final String suffix) {
+        final String[][] table = new String[2][max + 1];
+
+        for (int value = 0; value <= max; value++) {
+            table[0][value] = color + (double) value + suffix;
+            table[1][value] = color + '*' + (double) value + suffix;
+        }
+
+        return table;
+    }
+
+    /**
+     * Round the tps and append a {@code *} before if the value is higher than 20.0
      *
      * @param tps tps
-     * @return color for the tps
+     * @return tps rounded
      */
-    private @NotNull String getColor(final double tps) {
-        return (tps > 18.0) ? highColor : (tps > 16.0) ? mediumColor : lowColor;
+    private @NotNull String round(final double tps) {
+        return lookup(plain, Math.min(Math.round(tps), 20), tps, "", "");
     }
 
     private @NotNull String getPercent(final double tps) {
-        final double percent = Math.min(Math.round(100 / 20.0 * tps), 100.0);
-        return (tps > 20.0 ? "*" : "") + percent + '%';
+        return lookup(percent, Math.min(Math.round(100 / 20.0 * tps), 100), tps, "", "%");
     }
 
     private @NotNull String getColoredTps(final double tps) {
-        return getColor(tps) + round(tps);
+        final int color = getColorIndex(tps);
+        return lookup(colored[color], Math.min(Math.round(tps), 20), tps, colors[color], "");
     }
 
     private @NotNull String getColoredTpsPercent(final double tps) {
-        return getColor(tps) + getPercent(tps);
+        final int color = getColorIndex(tps);
+        return lookup(coloredPercent[color], Math.min(Math.round(100 / 20.0 * tps), 100), tps, colors[color], "%");
     }
 
-    private @NotNull String getAllTps(@NotNull final Function<Double, String> formatter) {
-        final StringJoiner joiner = new StringJoiner(ChatColor.GRAY + ", ");
-
-        for (final double tps : ServerUtil.getTps()) {
-            joiner.add(formatter.apply(tps));
+    /**
+     * Join the tps of the 1, 5 and 15 minutes windows, reusing the previous string while the snapshot is the same
+     *
+     * @param snapshot  snapshot
+     * @param formatter formatter of each window
+     * @param previous  string joined from the previous snapshot
+     * @return joined tps
+     */
+    private @NotNull AllTps getAllTps(
+        @NotNull final ServerSnapshot snapshot, @NotNull final DoubleFunction<String> formatter, @Nullable final AllTps previous
+    ) {
+        if (previous != null && previous.snapshot == snapshot) {
+            return previous;
         }
 
-        return joiner.toString();
+        final String value = formatter.apply(snapshot.tps(0)) + SEPARATOR + formatter.apply(snapshot.tps(1)) + SEPARATOR + formatter.apply(snapshot.tps(2));
+        return new AllTps(snapshot, value);
     }
 
-    public @Nullable String getTps(@Nullable final String type) {
+    /**
+     * Parse a tps type once and bind its window and style into a resolver
+     *
+     * @param type type (e.g. {@code 5_colored}), {@code null} or empty for all windows colored
+     * @return resolver if the type is valid, otherwise null
+     */
+    public @Nullable PlaceholderResolver compile(@Nullable final String type) {
         if (type == null || type.isEmpty()) {
-            return getAllTps(this::getColoredTps);
+            return (player, snapshot, now) -> (allTps = getAllTps(snapshot, this::getColoredTps, allTps)).value;
         }
 
-        switch (type) {
-            case "1":
-            case "one":
-                return round(ServerUtil.getTps()[0]);
-
-            case "5":
-            case "five":
-                return round(ServerUtil.getTps()[1]);
-
-            case "15":
-            case "fifteen":
-                return round(ServerUtil.getTps()[2]);
+        if (type.equals("percent")) {
+            return (player, snapshot, now) -> (allTpsPercent = getAllTps(snapshot, this::getColoredTpsPercent, allTpsPercent)).value;
+        }
 
-            case "1_colored":
-            case "one_colored":
-                return getColoredTps(ServerUtil.getTps()[0]);
+        final int separator = type.indexOf('_');
+        final ToDoubleFunction<ServerSnapshot> window = getWindow(separator == -1 ? type : type.substring(0, separator));
 
-            case "5_colored":
-            case "five_colored":
-                return getColoredTps(ServerUtil.getTps()[1]);
+        if (window == null) {
+            return null;
+        }
 
-            case "15_colored":
-            case "fifteen_colored":
-                return getColoredTps(ServerUtil.getTps()[2]);
+        if (separator == -1) {
+            return (player, snapshot, now) -> round(window.applyAsDouble(snapshot));
+        }
 
+        switch (type.substring(separator + 1)) {
+            case "colored":
+                return (player, snapshot, now) -> getColoredTps(window.applyAsDouble(snapshot));
             case "percent":
-                return getAllTps(this::getColoredTpsPercent);
-
-            case "1_percent":
-            case "one_percent":
-                return getPercent(ServerUtil.getTps()[0]);
-
-            case "5_percent":
-            case "five_percent":
-                return getPercent(ServerUtil.getTps()[1]);
+                return (player, snapshot, now) -> getPercent(window.applyAsDouble(snapshot));
+            case "percent_colored":
+                return (player, snapshot, now) -> getColoredTpsPercent(window.applyAsDouble(snapshot));
+        }
 
-            case "15_percent":
-            case "fifteen_percent":
-                return getPercent(ServerUtil.getTps()[2]);
+        return null;
+    }
 
-            case "1_percent_colored":
-            case "one_percent_colored":
-                return getColoredTpsPercent(ServerUtil.getTps()[0]);
+    /**
+     * Get the tps of a window, either one of the server's windows from {@link ServerSnapshot#tps(int)} or a window
+     * like {@code 10s} from the {@link TickSampler}
+     *
+     * @param window window name
+     * @return tps getter, or {@code null} if the window is unknown
+     */
+    private @Nullable ToDoubleFunction<ServerSnapshot> getWindow(@NotNull final String window) {
+        switch (window) {
+            case "1":
+            case "one":
+                return snapshot -> snapshot.tps(0);
 
-            case "5_percent_colored":
-            case "five_percent_colored":
-                return getColoredTpsPercent(ServerUtil.getTps()[1]);
+            case "5":
+            case "five":
+                return snapshot -> snapshot.tps(1);
 
-            case "15_percent_colored":
-            case "fifteen_percent_colored":
-                return getColoredTpsPercent(ServerUtil.getTps()[2]);
+            case "15":
+            case "fifteen":
+                return snapshot -> snapshot.tps(2);
         }
 
-        return null;
+        final long nanos = TickSampler.parseWindow(window);
+        return (nanos == -1) ? null : snapshot -> tickSampler.getTps(nanos);
     }
 
 }
@@ -1,119 +0,0 @@
-/**
- * MIT License
- * <p>
- * Copyright (c) 2021 TriumphTeam
- * <p>
- * Permission is hereby granted, free of charge, to any person obtaining a copy
- * of this software and associated documentation files (the "Software"), to deal
- * in the Software without restriction, including without limitation the rights
- * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
- * copies of the Software, and to permit persons to whom the Software is
- * furnished to do so, subject to the following conditions:
- * <p>
- * The above copyright notice and this permission notice shall be included in all
- * copies or substantial portions of the Software.
- * <p>
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
- * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
- * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
- * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
- * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
- * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
- * SOFTWARE.
- */
-package at.helpch.placeholderapi.expansion.server.util;
-
-import com.google.common.primitives.Ints;
-import org.bukkit.Bukkit;
-import org.jetbrains.annotations.NotNull;
-
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-/**
- * Class for detecting server version for legacy support :(
- */
-public final class VersionHelper {
-
-    private static final String CRAFTBUKKIT_PACKAGE = Bukkit.getServer().getClass().getPackage().getName();
-
-    private static final int V1_17 = 1_17_0;
-
-    private static final boolean IS_PAPER = checkPaper();
-    public static final String MINECRAFT_VERSION = getMinecraftVersion();
-    private static final int CURRENT_VERSION = getCurrentVersion();
-
-    public static final boolean IS_1_17_OR_HIGHER = CURRENT_VERSION >= V1_17;
-
-    /**
-     * Check if the server has access to the Paper API
-     * Taken from <a href="https://github.com/PaperMC/PaperLib">PaperLib</a>
-     *
-     * @return True if on Paper server (or forks), false anything else
-     */
-    private static boolean checkPaper() {
-        final String[] configClasses = {"io.papermc.paper.configuration.ConfigurationLoaders", "com.destroystokyo.paper.PaperConfig"};
-
-        for (String configClass : configClasses) {
-            try {
-                Class.forName(configClass);
-                return true;
-            } catch (ClassNotFoundException ignored) { }
-        }
-
-        return false;
-    }
-
-    /**
-     * Gets the current server version
-     *
-     * @return A protocol like number representing the version, for example 1.16.5 - 1165
-     */
-    private static int getCurrentVersion() {
-        // No need to cache since will only run once
-        final Matcher matcher = Pattern.compile("(?<version>\\d+\\.\\d+)(?<patch>\\.\\d+)?").matcher(MINECRAFT_VERSION);
-
-        final StringBuilder stringBuilder = new StringBuilder();
-        if (matcher.find()) {
-            stringBuilder.append(matcher.group("version").replace(".", ""));
-            final String patch = matcher.group("patch");
-            if (patch == null) stringBuilder.append("0");
-            else stringBuilder.append(patch.replace(".", ""));
-        }
-
-        //noinspection UnstableApiUsage
-        final Integer version = Ints.tryParse(stringBuilder.toString());
-
-        // Should never fail
-        if (version == null) throw new IllegalArgumentException("Could not retrieve server version!");
-
-        return version;
-    }
-
-    private static String getMinecraftVersion() {
-        if (IS_PAPER) {
-            try {
-                // Paper method from 2020 - returns the version like 1.20.1
-                return Bukkit.getMinecraftVersion();
-            } catch (NoSuchMethodError ignored) {
-                // The version is formatted as 1.20.1-R0.1-SNAPSHOT
-                return Bukkit.getBukkitVersion().split("-")[0];
-            }
-        }
-
-        // The version is formatted as 1.20.1-R0.1-SNAPSHOT
-        return Bukkit.getBukkitVersion().split("-")[0];
-    }
-
-    public static String getNmsVersion() {
-        final String version = Bukkit.getServer().getClass().getPackage().getName();
-        return version.substring(version.lastIndexOf('.') + 1);
-    }
-
-    public static Class<?> craftClass(@NotNull final String name) throws ClassNotFoundException {
-        return Class.forName(CRAFTBUKKIT_PACKAGE + "." + name);
-    }
-
-}
\ No newline at end of file
@@ -0,0 +1,78 @@
+package at.helpch.placeholderapi.expansion.server.network;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class FencesTest {
+
+    private static final int SEQUENCE = 0;
+    private static final int FIRST = 8;
+    private static final int SECOND = 16;
+    private static final long WRITES = 1_000_000;
+
+    private static int javaVersion() {
+        final String version = System.getProperty("java.specification.version");
+        return version.startsWith("1.") ? Integer.parseInt(version.substring(2)) : Integer.parseInt(version);
+    }
+
+    @Test
+    void supportedFromJava17() {
+        assertEquals(javaVersion() >= 17, NetworkStats.isSupported());
+    }
+
+    /**
+     * A writer publishes the same value twice through a sequence number, like a slot of {@link NetworkStats}, and the
+     * reader must never see the two halves of different writes
+     */
+    @Test
+    void readsNoTornWrites() throws InterruptedException {
+        assumeTrue(NetworkStats.isSupported(), "The fences require Java 17");
+
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(24);
+        final AtomicBoolean done = new AtomicBoolean();
+        final Thread writer = new Thread(() -> {
+            for (long value = 1; value <= WRITES; value++) {
+                final long sequence = buffer.getLong(SEQUENCE);
+                buffer.putLong(SEQUENCE, sequence | 1);
+                Fences.storeFence();
+
+                buffer.putLong(FIRST, value);
+                buffer.putLong(SECOND, value);
+
+                Fences.storeFence();
+                buffer.putLong(SEQUENCE, (sequence | 1) + 1);
+            }
+
+            done.set(true);
+        });
+
+        writer.start();
+
+        while (!done.get()) {
+            final long sequence = buffer.getLong(SEQUENCE);
+
+            if ((sequence & 1) != 0) {
+                Fences.spinWait();
+                continue;
+            }
+
+            Fences.loadFence();
+            final long first = buffer.getLong(FIRST);
+            final long second = buffer.getLong(SECOND);
+            Fences.loadFence();
+
+            if (buffer.getLong(SEQUENCE) == sequence) {
+                assertEquals(first, second);
+            }
+        }
+
+        writer.join();
+        assertEquals(WRITES, buffer.getLong(FIRST));
+    }
+
+}
@@ -0,0 +1,93 @@
+package at.helpch.placeholderapi.expansion.server.sampler;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.management.Notification;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class MemorySamplerTest {
+
+    private static final long WINDOW = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * Info of a real collection, the notifications of the tests only change its collector name and action
+     */
+    private static GcInfo gcInfo;
+
+    @BeforeAll
+    static void collect() {
+        System.gc();
+
+        for (final GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            final GcInfo info = ((com.sun.management.GarbageCollectorMXBean) collector).getLastGcInfo();
+
+            if (info != null) {
+                gcInfo = info;
+            }
+        }
+
+        assertNotNull(gcInfo, "System.gc() didn't run any collector");
+    }
+
+    private static @NotNull Notification notification(@NotNull final String name, @NotNull final String action) {
+        final GarbageCollectionNotificationInfo info = new GarbageCollectionNotificationInfo(name, action, "System.gc()", gcInfo);
+        final Notification notification = new Notification(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION, "test", 1);
+        notification.setUserData(info.toCompositeData(null));
+        return notification;
+    }
+
+    @Test
+    void recordsPauses() {
+        final MemorySampler sampler = new MemorySampler(true);
+
+        sampler.onNotification(notification("G1 Young Generation", "end of minor GC"), null);
+
+        assertEquals(gcInfo.getDuration(), sampler.getLastPause());
+        assertEquals(gcInfo.getDuration(), sampler.getPauseWindow(WINDOW).getMax());
+    }
+
+    @Test
+    void updatesWindowsRequestedBeforePauses() {
+        final MemorySampler sampler = new MemorySampler(true);
+        final MemorySampler.PauseWindow pauseWindow = sampler.getPauseWindow(WINDOW);
+
+        assertEquals(0, pauseWindow.getMax());
+
+        sampler.onNotification(notification("G1 Young Generation", "end of minor GC"), null);
+        sampler.run();
+
+        assertEquals(gcInfo.getDuration(), pauseWindow.getMax());
+    }
+
+    @Test
+    void skipsConcurrentCycles() {
+        final MemorySampler sampler = new MemorySampler(true);
+
+        sampler.onNotification(notification("ZGC Cycles", "end of GC cycle"), null);
+        sampler.onNotification(notification("Shenandoah Cycles", "end of GC cycle"), null);
+        sampler.onNotification(notification("G1 Concurrent GC", "end of concurrent GC pause"), null);
+
+        assertEquals(-1, sampler.getLastPause());
+        assertEquals(0, sampler.getPauseWindow(WINDOW).getMax());
+    }
+
+    @Test
+    void recordsPausesOfConcurrentCollectors() {
+        final MemorySampler sampler = new MemorySampler(true);
+
+        sampler.onNotification(notification("ZGC Cycles", "end of GC cycle"), null);
+        sampler.onNotification(notification("ZGC Pauses", "end of GC pause"), null);
+
+        assertEquals(gcInfo.getDuration(), sampler.getLastPause());
+    }
+
+}
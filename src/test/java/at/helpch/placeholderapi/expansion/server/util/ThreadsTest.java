@@ -0,0 +1,42 @@
+package at.helpch.placeholderapi.expansion.server.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ThreadsTest {
+
+    private static int javaVersion() {
+        final String version = System.getProperty("java.specification.version");
+        return version.startsWith("1.") ? Integer.parseInt(version.substring(2)) : Integer.parseInt(version);
+    }
+
+    private static boolean isVirtual(final Thread thread) throws ReflectiveOperationException {
+        return javaVersion() >= 21 && (boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+    }
+
+    @Test
+    void runsTasksOnNamedDaemonThreads() throws InterruptedException {
+        final ThreadFactory factory = Threads.newFactory("test-thread");
+        final AtomicReference<String> ranOn = new AtomicReference<>();
+        final Thread thread = factory.newThread(() -> ranOn.set(Thread.currentThread().getName()));
+
+        thread.start();
+        thread.join();
+
+        assertTrue(thread.isDaemon());
+        assertEquals("test-thread", ranOn.get());
+    }
+
+    @Test
+    void usesVirtualThreadsOnlyFromJava21() throws ReflectiveOperationException {
+        final Thread thread = Threads.newFactory("test-thread").newThread(() -> { });
+
+        assertEquals(javaVersion() >= 21, isVirtual(thread));
+    }
+
+}